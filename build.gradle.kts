@@ -13,6 +13,7 @@ plugins {
     alias(libs.plugins.qodana) // Gradle Qodana Plugin
     alias(libs.plugins.kover) // Gradle Kover Plugin
     alias(libs.plugins.grammarkit) // GrammarKit Plugin
+    alias(libs.plugins.jmh) // JMH Plugin
 }
 
 println(org.gradle.internal.jvm.Jvm.current().javaHome)
@@ -96,6 +97,28 @@ sourceSets {
     }
 }
 
+// Configure JMH Plugin - read more: https://github.com/melix/jmh-gradle-plugin
+// Run with ./gradlew jmh, the results are written to build/reports/jmh/results.json
+jmh {
+    jmhVersion = libs.versions.jmhCore
+    // the benchmarks use the corpus generator and the parsing fixture of the tests
+    includeTests = true
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("reports/jmh/results.json")
+    profilers = listOf("gc")
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes = listOf(it) }
+}
+
+configurations {
+    // the IntelliJ Platform is only added to the main and the test classpath
+    named("jmhImplementation") {
+        extendsFrom(testImplementation.get())
+    }
+    named("jmhRuntimeOnly") {
+        extendsFrom(testRuntimeOnly.get())
+    }
+}
+
 tasks {
     wrapper {
         gradleVersion = properties("gradleVersion").get()
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexes generated corpora of 1 KB to 10 MB, with the plain lexer as the parser uses it and with the adapter as the
+ * editor uses it. The tokens counter gives the tokens per second, the gc profiler the allocations per run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PureBasicLexerBenchmark {
+    @Param({"1", "16", "256", "1024", "10240"})
+    public int kilobytes;
+
+    private String code;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            tokens = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        code = PureBasicCorpus.generate(kilobytes * 1024, 42);
+    }
+
+    @Benchmark
+    public int lexer(Counters counters) throws IOException {
+        final PureBasicLexer lexer = new PureBasicLexer(null);
+        lexer.reset(code, 0, code.length(), PureBasicLexer.YYINITIAL);
+        int tokens = 0;
+        while (lexer.advance() != null) {
+            tokens++;
+        }
+        counters.tokens += tokens;
+        return tokens;
+    }
+
+    @Benchmark
+    public int adapter(Counters counters) {
+        final PureBasicLexerAdapter lexer = new PureBasicLexerAdapter();
+        lexer.start(code, 0, code.length(), 0);
+        int tokens = 0;
+        int states = 0;
+        while (lexer.getTokenType() != null) {
+            states ^= lexer.getState();
+            tokens++;
+            lexer.advance();
+        }
+        counters.tokens += tokens;
+        return tokens ^ states;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.PsiBuilder;
+import com.intellij.lang.PsiBuilderFactory;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
+import com.intellij.testFramework.ParsingTestCase;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses generated corpora of 1 KB to 10 MB, once into an AST with the PsiBuilder only and once into a PSI file which
+ * is walked completely. The kilobytes counter gives the kilobytes per second, the gc profiler the allocations per
+ * run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PureBasicParserBenchmark {
+    @Param({"1", "16", "256", "1024", "10240"})
+    public int kilobytes;
+
+    private String code;
+    private Fixture fixture;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long kilobytes;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            kilobytes = 0;
+        }
+    }
+
+    /**
+     * Provides the mock application and project the PsiBuilder and the PSI need, just like in the parser tests.
+     */
+    private static class Fixture extends ParsingTestCase {
+        Fixture() {
+            super("", "pb", new PureBasicParserDefinition());
+            setName("benchmark");
+        }
+
+        void start() throws Exception {
+            setUp();
+        }
+
+        void stop() throws Exception {
+            tearDown();
+        }
+
+        @NotNull
+        PsiFile parse(@NotNull String code) {
+            return createPsiFile("benchmark", code);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        code = PureBasicCorpus.generate(kilobytes * 1024, 42);
+        fixture = new Fixture();
+        fixture.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fixture.stop();
+    }
+
+    @Benchmark
+    public ASTNode parser(Counters counters) {
+        final PureBasicParserDefinition definition = new PureBasicParserDefinition();
+        final PsiBuilder builder = PsiBuilderFactory.getInstance()
+                .createBuilder(definition, definition.createLexer(null), code);
+        final ASTNode root = new PureBasicParser().parse(PureBasicParserDefinition.FILE, builder);
+        counters.kilobytes += kilobytes;
+        return root;
+    }
+
+    @Benchmark
+    public int psi(Counters counters) {
+        final PsiFile file = fixture.parse(code);
+        final int[] elements = {0};
+        file.accept(new PsiRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitElement(@NotNull PsiElement element) {
+                elements[0]++;
+                super.visitElement(element);
+            }
+        });
+        counters.kilobytes += kilobytes;
+        return elements[0];
+    }
+}
@@ -24,9 +24,76 @@
 package eu.bradan.purebasic;
 
 import com.intellij.lexer.FlexAdapter;
+import com.intellij.lexer.RestartableLexer;
+import com.intellij.lexer.TokenIterator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Adds the context of the last token to the state of the lexer, so that the editor can resume lexing at any token
+ * after an edit and stops as soon as the new tokens match the old ones again.
+ */
+public class PureBasicLexerAdapter extends FlexAdapter implements RestartableLexer {
+    /**
+     * The lexical state is kept in the bits below, the context of the last token in the bits from here on.
+     */
+    static final int CONTEXT_SHIFT = 8;
+    private static final int LEXICAL_STATE_MASK = (1 << CONTEXT_SHIFT) - 1;
+
+    private int tokenContext;
+    private boolean located;
 
-public class PureBasicLexerAdapter extends FlexAdapter {
     public PureBasicLexerAdapter() {
         super(new PureBasicLexer(null));
     }
+
+    @Override
+    public PureBasicLexer getFlex() {
+        return (PureBasicLexer) super.getFlex();
+    }
+
+    @Override
+    public void start(@NotNull CharSequence buffer, int startOffset, int endOffset, int initialState) {
+        super.start(buffer, startOffset, endOffset, initialState & LEXICAL_STATE_MASK);
+        getFlex().setLastTokenContext(initialState >>> CONTEXT_SHIFT);
+        located = false;
+    }
+
+    @Override
+    public void start(@NotNull CharSequence buffer, int startOffset, int endOffset, int initialState,
+                      TokenIterator tokenIterator) {
+        start(buffer, startOffset, endOffset, initialState);
+    }
+
+    @Override
+    public int getStartState() {
+        return 0;
+    }
+
+    @Override
+    public boolean isRestartableState(int state) {
+        // the state holds everything the lexer knows about the tokens before
+        return true;
+    }
+
+    @Override
+    public int getState() {
+        locateToken();
+        return super.getState() | tokenContext << CONTEXT_SHIFT;
+    }
+
+    @Override
+    public void advance() {
+        super.advance();
+        located = false;
+    }
+
+    @Override
+    protected void locateToken() {
+        if (!located) {
+            // like the lexical state, the state of a token is the context before it
+            tokenContext = getFlex().getLastTokenContext();
+            located = true;
+        }
+        super.locateToken();
+    }
 }
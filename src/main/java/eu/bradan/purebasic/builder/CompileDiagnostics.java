@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * The diagnostics of a build indexed by source file, so the editor annotations and the problems tree don't have
+ * to go through the whole log. Only messages which name a file and a line are indexed.
+ * <p>
+ * The warnings and errors of every compiled target are kept as well, once by identity and once with their lines,
+ * see {@link CompileDiagnosticsHistory}.
+ */
+public class CompileDiagnostics {
+    static final int MAX_TARGET_MESSAGES = 10000;
+
+    private final Map<String, List<CompileMessage>> messagesByFile = new TreeMap<>();
+    private final Map<String, Map<String, CompileMessage>> messagesByTarget = new LinkedHashMap<>();
+    private final Map<String, List<CompileMessage>> locatedByTarget = new LinkedHashMap<>();
+    private int targetMessageCount;
+    private int locatedMessageCount;
+
+    /**
+     * @return the key of the given path in the index, an absolute and normalized path with forward slashes like
+     * {@code VirtualFile.getPath()} returns it
+     */
+    @NotNull
+    static String toKey(@NotNull String path) {
+        try {
+            path = Paths.get(path).toAbsolutePath().normalize().toString();
+        } catch (InvalidPathException ignored) {
+        }
+        return path.replace('\\', '/');
+    }
+
+    synchronized void add(@NotNull CompileMessage message) {
+        if (message.file == null || message.line <= 0) {
+            return;
+        }
+        messagesByFile.computeIfAbsent(toKey(message.file), k -> new ArrayList<>()).add(message);
+    }
+
+    /**
+     * @return the identity of a message across builds, it doesn't contain the line, so a diagnostic stays the same
+     * when code above it is added or removed
+     */
+    @NotNull
+    static String toDiffKey(@NotNull CompileMessage message) {
+        return (message.file != null ? toKey(message.file) : "") + '\n' + message.type + '\n'
+                + message.getDescription();
+    }
+
+    /**
+     * Records the warnings and errors of a target which has been compiled, a target without any is recorded too.
+     */
+    synchronized void addTarget(@NotNull String target, @NotNull Collection<CompileMessage> messages) {
+        final Map<String, CompileMessage> targetMessages = messagesByTarget.computeIfAbsent(target,
+                k -> new LinkedHashMap<>());
+        final List<CompileMessage> located = locatedByTarget.computeIfAbsent(target, k -> new ArrayList<>());
+        for (CompileMessage message : messages) {
+            if (message.type == CompileMessage.CompileMessageType.INFO) {
+                continue;
+            }
+            if (targetMessageCount < MAX_TARGET_MESSAGES
+                    && targetMessages.putIfAbsent(toDiffKey(message), message) == null) {
+                targetMessageCount++;
+            }
+            if (locatedMessageCount < MAX_TARGET_MESSAGES && message.file != null && message.line > 0) {
+                located.add(message);
+                locatedMessageCount++;
+            }
+        }
+    }
+
+    synchronized void clear() {
+        messagesByFile.clear();
+        messagesByTarget.clear();
+        locatedByTarget.clear();
+        targetMessageCount = 0;
+        locatedMessageCount = 0;
+    }
+
+    public synchronized boolean isEmpty() {
+        return messagesByFile.isEmpty();
+    }
+
+    /**
+     * @return the files with diagnostics, sorted by path
+     */
+    @NotNull
+    public synchronized List<String> getFiles() {
+        return new ArrayList<>(messagesByFile.keySet());
+    }
+
+    /**
+     * @return the targets which have been compiled, see {@link #addTarget(String, Collection)}
+     */
+    @NotNull
+    synchronized Set<String> getTargets() {
+        return new LinkedHashSet<>(messagesByTarget.keySet());
+    }
+
+    /**
+     * @return the warnings and errors of every compiled target by {@link #toDiffKey(CompileMessage)}
+     */
+    @NotNull
+    synchronized Map<String, Map<String, CompileMessage>> getTargetMessages() {
+        final Map<String, Map<String, CompileMessage>> copy = new LinkedHashMap<>();
+        messagesByTarget.forEach((target, messages) -> copy.put(target, new LinkedHashMap<>(messages)));
+        return copy;
+    }
+
+    /**
+     * @return the warnings and errors with a file and a line of every compiled target, in the order they were
+     * reported
+     */
+    @NotNull
+    synchronized Map<String, List<CompileMessage>> getTargetLocations() {
+        final Map<String, List<CompileMessage>> copy = new LinkedHashMap<>();
+        locatedByTarget.forEach((target, messages) -> copy.put(target, new ArrayList<>(messages)));
+        return copy;
+    }
+
+    /**
+     * @return the diagnostics of the given file in the order they were reported
+     */
+    @NotNull
+    public synchronized List<CompileMessage> getMessages(@Nullable String path) {
+        if (path == null) {
+            return Collections.emptyList();
+        }
+        final List<CompileMessage> messages = messagesByFile.get(toKey(path));
+        return messages != null ? new ArrayList<>(messages) : Collections.emptyList();
+    }
+}
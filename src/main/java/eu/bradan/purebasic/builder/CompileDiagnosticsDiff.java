@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * The warnings and errors of a build compared with the ones of the previous build of the same targets.
+ */
+public class CompileDiagnosticsDiff {
+    private final EnumMap<Change, List<CompileMessage>> messages = new EnumMap<>(Change.class);
+    private final Set<String> newKeys = new HashSet<>();
+
+    CompileDiagnosticsDiff() {
+        for (Change change : Change.values()) {
+            messages.put(change, new ArrayList<>());
+        }
+    }
+
+    void add(@NotNull Change change, @NotNull String key, @NotNull CompileMessage message) {
+        messages.get(change).add(message);
+        if (change == Change.NEW) {
+            newKeys.add(key);
+        }
+    }
+
+    @NotNull
+    public List<CompileMessage> getMessages(@NotNull Change change) {
+        return Collections.unmodifiableList(messages.get(change));
+    }
+
+    /**
+     * @return whether the message hasn't been reported by the previous build
+     */
+    public boolean isNew(@NotNull CompileMessage message) {
+        return message.type != CompileMessage.CompileMessageType.INFO
+                && newKeys.contains(CompileDiagnostics.toDiffKey(message));
+    }
+
+    public enum Change {
+        NEW,
+        FIXED,
+        UNCHANGED
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * The warnings and errors of the last builds of a project, per target. Builds are only ever appended, the oldest
+ * one is dropped once there are {@link #MAX_BUILDS}.
+ * <p>
+ * A target which isn't compiled by a build, because it is up to date, its output has been restored from the build
+ * cache or the build has been cancelled, keeps its diagnostics of the build before. The message sets of such targets
+ * are shared between the builds instead of being copied.
+ * <p>
+ * The located messages of the latest build, merged the same way, are indexed by file for the editor annotations.
+ */
+class CompileDiagnosticsHistory {
+    static final int MAX_BUILDS = CompileLog.MAX_SESSIONS;
+
+    private final ArrayDeque<Map<String, Map<String, CompileMessage>>> builds = new ArrayDeque<>();
+    private final Map<String, List<CompileMessage>> locatedByTarget = new LinkedHashMap<>();
+    private Map<String, List<CompileMessage>> locatedByFile = Collections.emptyMap();
+
+    /**
+     * Appends the diagnostics of a finished build.
+     *
+     * @return the changes since the previous build
+     */
+    @NotNull
+    synchronized CompileDiagnosticsDiff append(@NotNull CompileDiagnostics diagnostics) {
+        final Map<String, Map<String, CompileMessage>> previous = builds.isEmpty()
+                ? Collections.emptyMap() : builds.peekLast();
+        final Map<String, Map<String, CompileMessage>> current = diagnostics.getTargetMessages();
+
+        final CompileDiagnosticsDiff diff = new CompileDiagnosticsDiff();
+        current.forEach((target, messages) -> {
+            final Map<String, CompileMessage> before = previous.getOrDefault(target, Collections.emptyMap());
+            messages.forEach((key, message) -> diff.add(before.containsKey(key)
+                    ? CompileDiagnosticsDiff.Change.UNCHANGED : CompileDiagnosticsDiff.Change.NEW, key, message));
+            before.forEach((key, message) -> {
+                if (!messages.containsKey(key)) {
+                    diff.add(CompileDiagnosticsDiff.Change.FIXED, key, message);
+                }
+            });
+        });
+
+        final Map<String, Map<String, CompileMessage>> build = new LinkedHashMap<>(previous);
+        build.putAll(current);
+        builds.addLast(Collections.unmodifiableMap(build));
+        if (builds.size() > MAX_BUILDS) {
+            builds.removeFirst();
+        }
+
+        locatedByTarget.putAll(diagnostics.getTargetLocations());
+        final Map<String, List<CompileMessage>> byFile = new HashMap<>();
+        final Set<String> seen = new HashSet<>();
+        for (List<CompileMessage> messages : locatedByTarget.values()) {
+            for (CompileMessage message : messages) {
+                // targets sharing an include file report its diagnostics once each
+                if (seen.add(toLocationKey(message))) {
+                    byFile.computeIfAbsent(CompileDiagnostics.toKey(message.file), k -> new ArrayList<>())
+                            .add(message);
+                }
+            }
+        }
+        locatedByFile = byFile;
+        return diff;
+    }
+
+    @NotNull
+    private static String toLocationKey(@NotNull CompileMessage message) {
+        return CompileDiagnostics.toDiffKey(message) + '\n' + message.line;
+    }
+
+    /**
+     * @return the warnings and errors of the given file as of the latest build, including the ones of targets which
+     * it didn't compile
+     */
+    @NotNull
+    synchronized List<CompileMessage> getMessages(@NotNull String path) {
+        final List<CompileMessage> messages = locatedByFile.get(CompileDiagnostics.toKey(path));
+        return messages != null ? new ArrayList<>(messages) : Collections.emptyList();
+    }
+
+    synchronized int size() {
+        return builds.size();
+    }
+}
@@ -23,50 +23,191 @@
 
 package eu.bradan.purebasic.builder;
 
-import javax.swing.*;
-import java.awt.*;
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.messages.Topic;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The build output of a project: the sessions of the last {@link #MAX_SESSIONS} builds, the newest one last.
+ * Every project has its own log, so builds of different projects neither mix their output nor contend for a
+ * shared list.
+ * <p>
+ * Sessions of builds the user didn't ask for are replaceable: of those only the newest finished one is kept, so
+ * frequent builds on save don't push the other builds out of the history.
+ */
+public class CompileLog implements Disposable {
+    public static final Topic<Listener> TOPIC = Topic.create("PureBasic compile log", Listener.class);
+
+    static final int MAX_SESSIONS = 10;
+    private static final int MAX_CACHED_FILES = 1000;
 
-public class CompileLog extends AbstractListModel<CompileMessage> {
-    private static final CompileLog compileLog = new CompileLog();
-    private final ArrayList<CompileMessage> list;
+    private final Project project;
+    private final ArrayDeque<CompileSession> sessions = new ArrayDeque<>();
+    private final HashMap<String, VirtualFile> files = new HashMap<>();
+    private final CompileDiagnosticsHistory history = new CompileDiagnosticsHistory();
+    private volatile PureBasicBuildMetrics lastMetrics;
 
-    private CompileLog() {
-        super();
-        list = new ArrayList<>();
+    public CompileLog(@NotNull Project project) {
+        this.project = project;
     }
 
-    public static CompileLog getInstance() {
-        return compileLog;
+    @NotNull
+    public static CompileLog getInstance(@NotNull Project project) {
+        return project.getService(CompileLog.class);
     }
 
-    public void clear() {
-        if (!list.isEmpty()) {
-            list.clear();
-            EventQueue.invokeLater(() ->
-                    fireIntervalRemoved(this, 0, list.size()));
+    /**
+     * Creates the session of a new build and drops the oldest one if there are too many.
+     *
+     * @param capacity the amount of messages kept in memory, older ones are moved to disk
+     */
+    @NotNull
+    public CompileSession startSession(@NotNull String title, int capacity) {
+        return startSession(title, capacity, false);
+    }
+
+    /**
+     * Creates the session of a new build and drops the oldest one if there are too many. A replaceable session drops
+     * the finished replaceable sessions, a session whose build is still running is kept until the next one.
+     *
+     * @param capacity the amount of messages kept in memory, older ones are moved to disk
+     */
+    @NotNull
+    public CompileSession startSession(@NotNull String title, int capacity, boolean replaceable) {
+        final CompileSession session = new CompileSession(title, capacity, replaceable);
+        final List<CompileSession> evicted = new ArrayList<>();
+        synchronized (sessions) {
+            if (replaceable) {
+                for (Iterator<CompileSession> it = sessions.iterator(); it.hasNext(); ) {
+                    final CompileSession previous = it.next();
+                    if (previous.isReplaceable() && previous.isFinished()) {
+                        it.remove();
+                        evicted.add(previous);
+                    }
+                }
+            }
+            sessions.addLast(session);
+            if (sessions.size() > MAX_SESSIONS) {
+                evicted.add(sessions.removeFirst());
+            }
         }
+        evicted.forEach(CompileSession::dispose);
+        project.getMessageBus().syncPublisher(TOPIC).sessionStarted(session);
+        return session;
     }
 
-    public void addLine(String s) {
-        addMessage(new CompileMessage(
-                CompileMessage.CompileMessageType.INFO,
-                s, null, -1));
+    /**
+     * Called when the build of the session is done, compares its diagnostics with the previous build and updates
+     * the editor annotations.
+     */
+    public void finishSession(@NotNull CompileSession session) {
+        session.setDiff(history.append(session.getDiagnostics()));
+        project.getMessageBus().syncPublisher(TOPIC).sessionFinished(session);
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (!project.isDisposed()) {
+                DaemonCodeAnalyzer.getInstance(project).restart();
+            }
+        });
     }
 
-    public void addMessage(CompileMessage message) {
-        list.add(message);
-        EventQueue.invokeLater(() ->
-                fireIntervalAdded(this, list.size() - 1, list.size() - 1));
+    /**
+     * @return the warnings and errors of the given file as of the last finished build, targets which the build
+     * didn't compile contribute the ones of the build before, see {@link CompileDiagnosticsHistory}
+     */
+    @NotNull
+    public List<CompileMessage> getBuildMessages(@NotNull String path) {
+        return history.getMessages(path);
     }
 
-    @Override
-    public int getSize() {
-        return list.size();
+    /**
+     * Finishes the metrics of a build, keeps them as the last ones of the project and notifies the
+     * {@link PureBasicBuildMetrics#TOPIC}.
+     */
+    public void finishMetrics(@NotNull PureBasicBuildMetrics metrics) {
+        metrics.finish();
+        lastMetrics = metrics;
+        project.getMessageBus().syncPublisher(PureBasicBuildMetrics.TOPIC).buildFinished(metrics);
+    }
+
+    /**
+     * @return The metrics of the last finished build of the project or null if there hasn't been a build yet.
+     */
+    @Nullable
+    public PureBasicBuildMetrics getLastMetrics() {
+        return lastMetrics;
+    }
+
+    @Nullable
+    public CompileSession getCurrentSession() {
+        synchronized (sessions) {
+            return sessions.peekLast();
+        }
+    }
+
+    /**
+     * @return all sessions, the oldest first
+     */
+    @NotNull
+    public List<CompileSession> getSessions() {
+        synchronized (sessions) {
+            return new ArrayList<>(sessions);
+        }
+    }
+
+    /**
+     * Looks up the file named in a compiler message. The result is cached, the file system is only refreshed if the
+     * file isn't known yet.
+     */
+    @Nullable
+    public VirtualFile findFile(@NotNull String path) {
+        final String key = CompileDiagnostics.toKey(path);
+        synchronized (files) {
+            final VirtualFile cached = files.get(key);
+            if (cached != null && cached.isValid()) {
+                return cached;
+            }
+        }
+
+        final File file = new File(key);
+        VirtualFile vFile = VfsUtil.findFileByIoFile(file, false);
+        if (vFile == null) {
+            vFile = VfsUtil.findFileByIoFile(file, true);
+        }
+        if (vFile != null) {
+            synchronized (files) {
+                if (files.size() >= MAX_CACHED_FILES) {
+                    files.clear();
+                }
+                files.put(key, vFile);
+            }
+        }
+        return vFile;
     }
 
     @Override
-    public CompileMessage getElementAt(int index) {
-        return list.get(index);
+    public void dispose() {
+        synchronized (sessions) {
+            sessions.forEach(CompileSession::dispose);
+            sessions.clear();
+        }
+    }
+
+    public interface Listener {
+        void sessionStarted(@NotNull CompileSession session);
+
+        void sessionFinished(@NotNull CompileSession session);
     }
 }
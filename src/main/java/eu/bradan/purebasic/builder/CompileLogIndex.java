@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * An inverted index over the messages of a {@link CompileSession}, it is updated as the messages are added. The
+ * words of the messages map to the positions of the messages, and so do their types, files and targets. A query is
+ * answered by combining bit sets of positions, so filtering large logs doesn't read the messages at all, which
+ * matters as most of them have been moved to disk by the {@link CompileMessageStore}.
+ * <p>
+ * Not thread-safe, {@link CompileSession} guards it with the lock of its store.
+ */
+class CompileLogIndex {
+    private final TreeMap<String, Postings> words = new TreeMap<>();
+    private final EnumMap<CompileMessage.CompileMessageType, BitSet> types =
+            new EnumMap<>(CompileMessage.CompileMessageType.class);
+    private final TreeMap<String, BitSet> files = new TreeMap<>();
+    private final TreeMap<String, BitSet> targets = new TreeMap<>();
+    private final HashSet<String> messageWords = new HashSet<>();
+    private int size;
+
+    /**
+     * Adds the message at the next position.
+     */
+    void add(@NotNull CompileMessage message, @Nullable String target) {
+        final int position = size++;
+
+        messageWords.clear();
+        tokenize(message.message, messageWords);
+        for (String word : messageWords) {
+            words.computeIfAbsent(word, k -> new Postings()).add(position);
+        }
+        types.computeIfAbsent(message.type, k -> new BitSet()).set(position);
+        if (message.file != null) {
+            files.computeIfAbsent(CompileDiagnostics.toKey(message.file), k -> new BitSet()).set(position);
+        }
+        if (target != null) {
+            targets.computeIfAbsent(target, k -> new BitSet()).set(position);
+        }
+    }
+
+    void clear() {
+        words.clear();
+        types.clear();
+        files.clear();
+        targets.clear();
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @NotNull
+    List<String> getFiles() {
+        return new ArrayList<>(files.keySet());
+    }
+
+    @NotNull
+    List<String> getTargets() {
+        return new ArrayList<>(targets.keySet());
+    }
+
+    /**
+     * @return the positions of the messages which match the query
+     */
+    @NotNull
+    BitSet find(@NotNull Query query) {
+        return find(query, 0, size);
+    }
+
+    /**
+     * Matches only the messages in the given range, so messages appended to a filtered log don't require another
+     * look at the ones before.
+     *
+     * @return the matching messages of the range, bit i stands for the message at position from + i
+     */
+    @NotNull
+    BitSet find(@NotNull Query query, int from, int to) {
+        to = Math.min(to, size);
+        final BitSet result = new BitSet();
+        if (from >= to) {
+            return result;
+        }
+        result.set(0, to - from);
+
+        // every word of the text has to be the start of a word in the message, so results show up while typing
+        final Set<String> queryWords = new HashSet<>();
+        tokenize(query.text, queryWords);
+        for (String queryWord : queryWords) {
+            final BitSet matches = new BitSet(to - from);
+            for (Postings postings : words.subMap(queryWord, true, queryWord + Character.MAX_VALUE, false)
+                    .values()) {
+                postings.addTo(matches, from, to);
+            }
+            result.and(matches);
+        }
+
+        if (query.types.size() < CompileMessage.CompileMessageType.values().length) {
+            final BitSet matches = new BitSet(to - from);
+            for (CompileMessage.CompileMessageType type : query.types) {
+                final BitSet positions = types.get(type);
+                if (positions != null) {
+                    matches.or(positions.get(from, to));
+                }
+            }
+            result.and(matches);
+        }
+        if (query.file != null) {
+            result.and(range(files.get(query.file), from, to));
+        }
+        if (query.target != null) {
+            result.and(range(targets.get(query.target), from, to));
+        }
+        return result;
+    }
+
+    @NotNull
+    private static BitSet range(@Nullable BitSet positions, int from, int to) {
+        return positions != null ? positions.get(from, to) : new BitSet();
+    }
+
+    private static void tokenize(@NotNull String text, @NotNull Collection<String> words) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            final boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * A filter of the build tool window, null and empty values don't restrict the result.
+     */
+    static class Query {
+        final String text;
+        final Set<CompileMessage.CompileMessageType> types;
+        final String file;
+        final String target;
+
+        Query(@NotNull String text, @NotNull Set<CompileMessage.CompileMessageType> types, @Nullable String file,
+              @Nullable String target) {
+            this.text = text;
+            this.types = types;
+            this.file = file;
+            this.target = target;
+        }
+
+        boolean isEmpty() {
+            return text.trim().isEmpty() && types.size() == CompileMessage.CompileMessageType.values().length
+                    && file == null && target == null;
+        }
+    }
+
+    /**
+     * The ascending positions of the messages containing a word. Most words occur in a few messages only, so a
+     * growing int array needs far less memory than a bit set per word.
+     */
+    private static class Postings {
+        private int[] positions = new int[4];
+        private int count;
+
+        void add(int position) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = position;
+        }
+
+        /**
+         * Sets the bits of the positions in the given range, relative to its start.
+         */
+        void addTo(@NotNull BitSet bits, int from, int to) {
+            int i = Arrays.binarySearch(positions, 0, count, from);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            for (; i < count && positions[i] < to; i++) {
+                bits.set(positions[i] - from);
+            }
+        }
+    }
+}
@@ -26,11 +26,10 @@ package eu.bradan.purebasic.builder;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.OpenFileDescriptor;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.project.ProjectLocator;
-import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
 
-import java.io.File;
+import java.util.regex.Matcher;
 
 public class CompileMessage {
     public final CompileMessageType type;
@@ -45,15 +44,21 @@ public class CompileMessage {
         this.line = line;
     }
 
-    public void navigateTo() {
+    /**
+     * @return the message without the "Line N - " prefix of the compiler, the line is known anyway
+     */
+    @NotNull
+    public String getDescription() {
+        final Matcher matcher = CompileOutputParser.PATTERN_ERROR_LINE.matcher(message);
+        return matcher.matches() ? matcher.group(3) : message;
+    }
+
+    public void navigateTo(@NotNull Project project) {
         if (file == null || line <= 0) return;
 
-        final VirtualFile vFile = VfsUtil.findFileByIoFile(new File(file), true);
+        final VirtualFile vFile = CompileLog.getInstance(project).findFile(file);
         if (vFile == null || vFile.getFileType().isBinary()) return;
 
-        Project project = ProjectLocator.getInstance().guessProjectForFile(vFile);
-        if (project == null) return;
-
         FileEditorManager.getInstance(project).openEditor(
                 new OpenFileDescriptor(project, vFile, line - 1, 0),
                 true);
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An append-only list of {@link CompileMessage}s which keeps only the newest messages in memory.
+ * <p>
+ * The newest {@link #getCapacity() capacity} messages live in a ring buffer. Older messages are written to a
+ * temporary file and read back through memory mapped pages when they are requested, e.g. when the user scrolls up
+ * in the build tool window. Per spilled message only its file offset stays on the heap.
+ * <p>
+ * Record layout in the file: type ordinal (byte), line (int), message and file (each as byte length and UTF-8
+ * bytes, a length of -1 for null).
+ * <p>
+ * Not thread-safe, {@link CompileSession} guards it with its own lock.
+ */
+class CompileMessageStore {
+    static final int DEFAULT_CAPACITY = 10000;
+
+    private static final Logger LOG = Logger.getInstance(CompileMessageStore.class);
+    private static final int PAGE_SIZE = 1024 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int PAGE_CACHE_SIZE = 4;
+    private static final CompileMessage.CompileMessageType[] TYPES = CompileMessage.CompileMessageType.values();
+
+    private final CompileMessage[] ring;
+    private int head;
+    private int inMemory;
+
+    private FileChannel spill;
+    private Path spillFile;
+    private long[] offsets = new long[1024];
+    private int spilled;
+    private long spillEnd;
+    private long flushedEnd;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+    private final LinkedHashMap<Long, MappedByteBuffer> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, MappedByteBuffer> eldest) {
+            return size() > PAGE_CACHE_SIZE;
+        }
+    };
+
+    CompileMessageStore(int capacity) {
+        ring = new CompileMessage[Math.max(1, capacity)];
+    }
+
+    int getCapacity() {
+        return ring.length;
+    }
+
+    int size() {
+        return spilled + inMemory;
+    }
+
+    void add(@NotNull CompileMessage message) {
+        if (inMemory == ring.length) {
+            spillOldest();
+        }
+        ring[(head + inMemory) % ring.length] = message;
+        inMemory++;
+    }
+
+    @NotNull
+    CompileMessage get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index + " of " + size());
+        }
+        if (index >= spilled) {
+            return ring[(head + index - spilled) % ring.length];
+        }
+
+        try {
+            return read(index);
+        } catch (IOException | RuntimeException e) {
+            // also a record which could not be written completely
+            LOG.warn("Unable to read a spilled compile message", e);
+            return new CompileMessage(CompileMessage.CompileMessageType.WARN, "?", null, -1);
+        }
+    }
+
+    /**
+     * Removes all messages. The spill file is kept and overwritten by the next messages.
+     */
+    void clear() {
+        Arrays.fill(ring, null);
+        head = 0;
+        inMemory = 0;
+        spilled = 0;
+        spillEnd = 0;
+        flushedEnd = 0;
+        writeBuffer.clear();
+        pages.clear();
+    }
+
+    /**
+     * Releases the spill file, the store must not be used afterwards.
+     */
+    void dispose() {
+        clear();
+        if (spill != null) {
+            try {
+                spill.close();
+                Files.deleteIfExists(spillFile);
+            } catch (IOException ignored) {
+            }
+            spill = null;
+        }
+    }
+
+    private void spillOldest() {
+        final CompileMessage message = ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        inMemory--;
+
+        if (spilled == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[spilled++] = spillEnd;
+
+        final byte[] text = bytes(message.message);
+        final byte[] file = bytes(message.file);
+        final int length = 1 + Integer.BYTES + lengthOf(text) + lengthOf(file);
+        try {
+            if (writeBuffer.remaining() < length) {
+                flush();
+            }
+            final ByteBuffer buffer = length <= writeBuffer.capacity() ? writeBuffer : ByteBuffer.allocate(length);
+            buffer.put((byte) message.type.ordinal());
+            buffer.putInt(message.line);
+            put(buffer, text);
+            put(buffer, file);
+            if (buffer != writeBuffer) {
+                buffer.flip();
+                write(buffer);
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to spill a compile message", e);
+        }
+        spillEnd += length;
+    }
+
+    private void flush() throws IOException {
+        writeBuffer.flip();
+        write(writeBuffer);
+        writeBuffer.clear();
+    }
+
+    private void write(@NotNull ByteBuffer buffer) throws IOException {
+        if (spill == null) {
+            spillFile = Files.createTempFile("purebasic-log", ".bin");
+            spillFile.toFile().deleteOnExit();
+            spill = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        while (buffer.hasRemaining()) {
+            flushedEnd += spill.write(buffer, flushedEnd);
+        }
+    }
+
+    @NotNull
+    private CompileMessage read(int index) throws IOException {
+        final long offset = offsets[index];
+        final long end = index + 1 < spilled ? offsets[index + 1] : spillEnd;
+        if (end > flushedEnd) {
+            flush();
+        }
+
+        final int length = (int) (end - offset);
+        final ByteBuffer record;
+        final long pageStart = offset - offset % PAGE_SIZE;
+        if (offset + length <= pageStart + PAGE_SIZE) {
+            record = page(pageStart).duplicate();
+            record.position((int) (offset - pageStart));
+        } else {
+            // larger than a page or crossing a page boundary
+            record = spill.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+
+        final CompileMessage.CompileMessageType type = TYPES[record.get()];
+        final int line = record.getInt();
+        final String message = get(record);
+        final String file = get(record);
+        return new CompileMessage(type, message != null ? message : "", file, line);
+    }
+
+    @NotNull
+    private MappedByteBuffer page(long pageStart) throws IOException {
+        MappedByteBuffer page = pages.get(pageStart);
+        final long available = Math.min(PAGE_SIZE, flushedEnd - pageStart);
+        if (page == null || page.capacity() < available) {
+            // the last page grows while messages are spilled
+            page = spill.map(FileChannel.MapMode.READ_ONLY, pageStart, available);
+            pages.put(pageStart, page);
+        }
+        return page;
+    }
+
+    @Nullable
+    private static byte[] bytes(@Nullable String s) {
+        return s != null ? s.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int lengthOf(@Nullable byte[] bytes) {
+        return Integer.BYTES + (bytes != null ? bytes.length : 0);
+    }
+
+    private static void put(@NotNull ByteBuffer buffer, @Nullable byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    @Nullable
+    private static String get(@NotNull ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
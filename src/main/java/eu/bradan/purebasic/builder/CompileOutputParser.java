@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns the output of the compiler into {@link CompileMessage}s line by line, as soon as the lines arrive.
+ * Each output stream needs its own parser, because an "in included file" line only applies to the
+ * "Line N" lines which follow it in the same stream.
+ */
+class CompileOutputParser {
+    static final Pattern PATTERN_ERROR_INCLUDE = Pattern.compile("Error: in included file '(.*)'");
+    static final Pattern PATTERN_ERROR_LINE = Pattern.compile("(Error: )?Line ([0-9]+) - (.*)");
+
+    private final CompileMessage.CompileMessageType defaultType;
+    private String errorFile;
+    private long parseTime;
+
+    /**
+     * @param inputFile   The main source file, errors are reported for it until an include is named.
+     * @param defaultType The type of lines which are no diagnostics, INFO for stdout and ERROR for stderr.
+     */
+    CompileOutputParser(@NotNull String inputFile, @NotNull CompileMessage.CompileMessageType defaultType) {
+        this.defaultType = defaultType;
+        this.errorFile = inputFile;
+    }
+
+    @NotNull
+    CompileMessage parse(@NotNull String line) {
+        final Matcher matchErrorInclude = PATTERN_ERROR_INCLUDE.matcher(line);
+        if (matchErrorInclude.matches()) {
+            errorFile = matchErrorInclude.group(1);
+        }
+
+        final Matcher matchErrorLine = PATTERN_ERROR_LINE.matcher(line);
+        if (matchErrorLine.matches()) {
+            return new CompileMessage(CompileMessage.CompileMessageType.ERROR,
+                    line, errorFile, Integer.parseInt(matchErrorLine.group(2)));
+        }
+        return new CompileMessage(defaultType, line, null, -1);
+    }
+
+    /**
+     * Reads the stream until it is closed and logs every line as soon as it is complete.
+     */
+    void pump(@NotNull InputStream stream, @NotNull PureBasicCompiler.CompileMessageLogger logger)
+            throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final long start = System.nanoTime();
+                final CompileMessage message = parse(line);
+                parseTime += System.nanoTime() - start;
+                logger.log(message);
+            }
+        }
+    }
+
+    /**
+     * @return Nanoseconds {@link #pump} spent parsing, excluding the time waiting for output.
+     */
+    long getParseTime() {
+        return parseTime;
+    }
+}
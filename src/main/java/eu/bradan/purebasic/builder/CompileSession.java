@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import com.intellij.concurrency.JobScheduler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The compiler output of one build, shown in the build tool window. See {@link CompileLog} for the history of
+ * sessions of a project.
+ * <p>
+ * Messages can be added from any thread. They are queued and moved into the list in batches of at most
+ * {@link #MAX_FLUSH_MESSAGES}, at most once per {@link #FLUSH_INTERVAL_MS} unless a batch has been cut off, so
+ * verbose compilers don't flood the event queue with one event per line. A pooled thread appends a batch to the store
+ * and the index, which may have to write to disk, and the EDT only publishes the new size to the listeners. The
+ * list, like any other Swing model, only shows the published messages and must be used on the EDT.
+ * <p>
+ * Only the newest messages are kept in memory, see {@link CompileMessageStore}.
+ */
+public class CompileSession extends AbstractListModel<CompileMessage> {
+    static final long FLUSH_INTERVAL_MS = 50;
+    static final int MAX_FLUSH_MESSAGES = 5000;
+
+    /**
+     * Queued in place of a message to clear the list, so messages added after clear() are kept.
+     */
+    private static final Pending CLEAR = new Pending(new CompileMessage(CompileMessage.CompileMessageType.INFO, "",
+            null, -1), null);
+
+    private final String title;
+    private final long started;
+    private final boolean replaceable;
+    private final CompileMessageStore store;
+    private final CompileDiagnostics diagnostics = new CompileDiagnostics();
+    private final CompileLogIndex index = new CompileLogIndex();
+    private final ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    // the amount of messages the listeners know, only used on the EDT
+    private int visibleSize;
+    private volatile CompileDiagnosticsDiff diff;
+    private volatile boolean disposed;
+
+    /**
+     * @param capacity the amount of messages kept in memory, older ones are moved to disk
+     */
+    CompileSession(@NotNull String title, int capacity) {
+        this(title, capacity, false);
+    }
+
+    /**
+     * @param capacity    the amount of messages kept in memory, older ones are moved to disk
+     * @param replaceable whether the session is dropped from the log once the next replaceable session starts
+     */
+    CompileSession(@NotNull String title, int capacity, boolean replaceable) {
+        super();
+        this.title = title;
+        this.started = System.currentTimeMillis();
+        this.replaceable = replaceable;
+        this.store = new CompileMessageStore(capacity);
+    }
+
+    @NotNull
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return the time the session has been created, in milliseconds since the epoch
+     */
+    public long getStarted() {
+        return started;
+    }
+
+    /**
+     * @return the messages with a file and line, unlike the list they are available as soon as they are added
+     */
+    @NotNull
+    public CompileDiagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * @return the changes of the diagnostics since the previous build, null until the build is finished
+     */
+    @Nullable
+    public CompileDiagnosticsDiff getDiff() {
+        return diff;
+    }
+
+    void setDiff(@Nullable CompileDiagnosticsDiff diff) {
+        this.diff = diff;
+    }
+
+    boolean isReplaceable() {
+        return replaceable;
+    }
+
+    /**
+     * @return whether the build of the session is done
+     */
+    boolean isFinished() {
+        return diff != null;
+    }
+
+    /**
+     * Releases the messages, the session can't be shown anymore afterwards.
+     */
+    void dispose() {
+        disposed = true;
+        pending.clear();
+        diagnostics.clear();
+        EventQueue.invokeLater(() -> {
+            synchronized (store) {
+                store.dispose();
+                index.clear();
+            }
+            final int size = visibleSize;
+            visibleSize = 0;
+            if (size > 0) {
+                fireIntervalRemoved(this, 0, size - 1);
+            }
+        });
+    }
+
+    public void clear() {
+        synchronized (pending) {
+            pending.add(CLEAR);
+            diagnostics.clear();
+        }
+        scheduleFlush();
+    }
+
+    public void addLine(String s) {
+        addMessage(new CompileMessage(
+                CompileMessage.CompileMessageType.INFO,
+                s, null, -1));
+    }
+
+    public void addMessage(CompileMessage message) {
+        addMessage(null, message);
+    }
+
+    /**
+     * Adds a message of the given target as soon as it arrives, the messages of targets compiled in parallel are
+     * interleaved in the list but can be told apart by the target.
+     */
+    public void addMessage(@Nullable String target, CompileMessage message) {
+        if (disposed) {
+            return;
+        }
+        synchronized (pending) {
+            pending.add(new Pending(message, target));
+            diagnostics.add(message);
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Records the warnings and errors of a compiled target whose messages have been added one by one. They are
+     * compared with the ones of the previous build when the build is finished.
+     */
+    public void finishTarget(@NotNull String target, @NotNull Collection<CompileMessage> messages) {
+        if (!disposed) {
+            diagnostics.addTarget(target, messages);
+        }
+    }
+
+    /**
+     * Adds several messages as one block, messages added concurrently by other threads end up before or after it.
+     */
+    public void addMessages(Collection<CompileMessage> messages) {
+        addMessages(null, messages);
+    }
+
+    /**
+     * Adds the output of a compiled target as one block. Its warnings and errors are compared with the ones of the
+     * previous build when the build is finished.
+     */
+    public void addMessages(@Nullable String target, Collection<CompileMessage> messages) {
+        if (disposed) {
+            return;
+        }
+        if (target != null) {
+            diagnostics.addTarget(target, messages);
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+        synchronized (pending) {
+            for (CompileMessage message : messages) {
+                pending.add(new Pending(message, target));
+                diagnostics.add(message);
+            }
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            JobScheduler.getScheduler().schedule(this::flush, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Appends a batch of queued messages to the store and the index and publishes them on the EDT. A batch ends
+     * after {@link #MAX_FLUSH_MESSAGES} messages or at a clear, which has to wait until the EDT doesn't show the
+     * cleared messages anymore.
+     */
+    void flush() {
+        int count = 0;
+        Pending entry = null;
+        while (count < MAX_FLUSH_MESSAGES && (entry = pending.poll()) != null) {
+            if (entry == CLEAR) {
+                break;
+            }
+            synchronized (store) {
+                if (disposed) {
+                    return;
+                }
+                store.add(entry.message);
+                index.add(entry.message, entry.target);
+            }
+            count++;
+        }
+
+        final int size;
+        synchronized (store) {
+            size = store.size();
+        }
+        final boolean clear = entry == CLEAR;
+        final boolean cut = clear || count == MAX_FLUSH_MESSAGES;
+        EventQueue.invokeLater(() -> publish(size, clear, cut));
+    }
+
+    /**
+     * Tells the listeners about the messages of a batch, must be called on the EDT.
+     */
+    private void publish(int size, boolean clear, boolean cut) {
+        if (disposed) {
+            return;
+        }
+        if (clear) {
+            // the messages of the batch before the clear are dropped without ever being shown
+            synchronized (store) {
+                store.clear();
+                index.clear();
+            }
+            final int oldSize = visibleSize;
+            visibleSize = 0;
+            if (oldSize > 0) {
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            }
+        } else if (visibleSize < size) {
+            final int first = visibleSize;
+            visibleSize = size;
+            fireIntervalAdded(this, first, size - 1);
+        }
+
+        // messages queued from now on need another flush
+        flushScheduled.set(false);
+        if (!pending.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+            JobScheduler.getScheduler().schedule(this::flush, cut ? 0 : FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return whether queued messages are waiting to be shown
+     */
+    boolean isFlushScheduled() {
+        return flushScheduled.get();
+    }
+
+    /**
+     * @return the shown messages from the given position on which match the query, bit i stands for the message at
+     * position from + i, see {@link CompileLogIndex#find(CompileLogIndex.Query, int, int)}. Must be called on the
+     * EDT.
+     */
+    @NotNull
+    BitSet find(@NotNull CompileLogIndex.Query query, int from) {
+        synchronized (store) {
+            return index.find(query, from, visibleSize);
+        }
+    }
+
+    /**
+     * @return the files named by the messages, see {@link CompileLogIndex#getFiles()}
+     */
+    @NotNull
+    List<String> getFiles() {
+        synchronized (store) {
+            return index.getFiles();
+        }
+    }
+
+    /**
+     * @return the targets of the messages, see {@link CompileLogIndex#getTargets()}
+     */
+    @NotNull
+    List<String> getTargets() {
+        synchronized (store) {
+            return index.getTargets();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return visibleSize;
+    }
+
+    @Override
+    public CompileMessage getElementAt(int index) {
+        synchronized (store) {
+            return store.get(index);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return title;
+    }
+
+    private static class Pending {
+        final CompileMessage message;
+        final String target;
+
+        Pending(@NotNull CompileMessage message, @Nullable String target) {
+            this.message = message;
+            this.target = target;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The messages of a {@link CompileSession} which match the filter of the build tool window. The matching positions
+ * are looked up in the {@link CompileLogIndex} of the session, the messages themselves are only read when they are
+ * shown. Without a filter all messages are shown as they are.
+ * <p>
+ * Like the session it must only be used on the EDT.
+ */
+class CompileSessionView extends AbstractListModel<CompileMessage> implements ListDataListener {
+    private final CompileSession session;
+    private CompileLogIndex.Query query;
+    // the positions of the matching messages in the session, null if all messages are shown
+    private int[] rows;
+    private int rowCount;
+
+    CompileSessionView(@NotNull CompileSession session) {
+        this.session = session;
+        session.addListDataListener(this);
+    }
+
+    @NotNull
+    CompileSession getSession() {
+        return session;
+    }
+
+    /**
+     * Stops following the session.
+     */
+    void dispose() {
+        session.removeListDataListener(this);
+    }
+
+    /**
+     * Shows the messages matching the given query. The rows shown before and after are reported as changed, the
+     * difference in size as added or removed rows.
+     */
+    void setQuery(@Nullable CompileLogIndex.Query query) {
+        this.query = query != null && !query.isEmpty() ? query : null;
+        final int oldSize = getSize();
+        update(0);
+        final int size = getSize();
+        final int common = Math.min(oldSize, size);
+        if (common > 0) {
+            fireContentsChanged(this, 0, common - 1);
+        }
+        if (oldSize < size) {
+            fireIntervalAdded(this, oldSize, size - 1);
+        } else if (size < oldSize) {
+            fireIntervalRemoved(this, size, oldSize - 1);
+        }
+    }
+
+    /**
+     * Matches the messages from the given position on and appends them to the rows, the rows before are kept.
+     */
+    private void update(int from) {
+        if (query == null) {
+            rows = null;
+            rowCount = 0;
+            return;
+        }
+        if (rows == null || from == 0) {
+            rows = new int[16];
+            rowCount = 0;
+        }
+        final BitSet matches = session.find(query, from);
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            if (rowCount == rows.length) {
+                rows = Arrays.copyOf(rows, rowCount * 2);
+            }
+            rows[rowCount++] = from + i;
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return rows != null ? rowCount : session.getSize();
+    }
+
+    @Override
+    public CompileMessage getElementAt(int index) {
+        return session.getElementAt(rows != null ? rows[index] : index);
+    }
+
+    @Override
+    public void intervalAdded(ListDataEvent e) {
+        if (query == null) {
+            fireIntervalAdded(this, e.getIndex0(), e.getIndex1());
+            return;
+        }
+        final int oldSize = rowCount;
+        update(e.getIndex0());
+        if (oldSize < rowCount) {
+            fireIntervalAdded(this, oldSize, rowCount - 1);
+        }
+    }
+
+    @Override
+    public void intervalRemoved(ListDataEvent e) {
+        if (query == null) {
+            fireIntervalRemoved(this, e.getIndex0(), e.getIndex1());
+            return;
+        }
+        // the session only removes all messages at once
+        final int oldSize = rowCount;
+        update(0);
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+    }
+
+    @Override
+    public void contentsChanged(ListDataEvent e) {
+        setQuery(query);
+    }
+}
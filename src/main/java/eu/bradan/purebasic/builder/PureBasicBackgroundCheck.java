@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import eu.bradan.purebasic.module.PureBasicModuleSettings;
+import eu.bradan.purebasic.module.PureBasicModuleType;
+import eu.bradan.purebasic.module.PureBasicTargetSettings;
+import eu.bradan.purebasic.settings.PureBasicCompilerSettings;
+import eu.bradan.purebasic.settings.PureBasicCompilerSettingsState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the targets including a saved file for errors in the background, if enabled in the compiler settings. The
+ * results are shown by {@link PureBasicCompileAnnotator} until the next build which compiles their target.
+ * <p>
+ * Saves are debounced, and a check which is still running when another file is saved is cancelled, which kills its
+ * compiler. Checks run on a warm standby compiler of the SDK, so they don't pay for starting one. The results are cached by the {@link PureBasicTargetFingerprint} of the check, which covers the content
+ * of all files of the compilation unit, so saving unchanged content never launches the compiler again.
+ */
+public class PureBasicBackgroundCheck implements Disposable {
+    static final long DEBOUNCE_MS = 500;
+
+    private static final Logger LOG = Logger.getInstance(PureBasicBackgroundCheck.class);
+    private static final int MAX_CACHED_RESULTS = 64;
+
+    private final Project project;
+    private final Set<String> savedFiles = new HashSet<>();
+    private ScheduledFuture<?> scheduled;
+    private ProgressIndicator running;
+
+    private final LinkedHashMap<String, List<CompileMessage>> cache =
+            new LinkedHashMap<String, List<CompileMessage>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<CompileMessage>> eldest) {
+                    return size() > MAX_CACHED_RESULTS;
+                }
+            };
+    private final Map<String, TargetResult> results = new HashMap<>();
+    private volatile TargetResult merged = new TargetResult(Collections.emptySet(), Collections.emptyList());
+
+    public PureBasicBackgroundCheck(@NotNull Project project) {
+        this.project = project;
+        // a build is newer than the checks of the targets it compiled, the checks of other targets stay
+        project.getMessageBus().connect(this).subscribe(CompileLog.TOPIC, new CompileLog.Listener() {
+            @Override
+            public void sessionStarted(@NotNull CompileSession session) {
+            }
+
+            @Override
+            public void sessionFinished(@NotNull CompileSession session) {
+                final Set<String> compiled = session.getDiagnostics().getTargets();
+                synchronized (results) {
+                    if (results.keySet().removeAll(compiled)) {
+                        updateMerged();
+                    }
+                }
+            }
+        });
+    }
+
+    @NotNull
+    public static PureBasicBackgroundCheck getInstance(@NotNull Project project) {
+        return project.getService(PureBasicBackgroundCheck.class);
+    }
+
+    /**
+     * Schedules a check of the targets including the file, a check which is already scheduled or running is
+     * replaced.
+     */
+    public void fileSaved(@NotNull VirtualFile file) {
+        final PureBasicCompilerSettingsState settings = ServiceManager
+                .getService(PureBasicCompilerSettings.class).getState();
+        if (settings == null || !settings.isCheckOnSave()) {
+            return;
+        }
+
+        synchronized (this) {
+            savedFiles.add(CompileDiagnostics.toKey(file.getPath()));
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            if (running != null) {
+                running.cancel();
+            }
+            scheduled = AppExecutorUtil.getAppScheduledExecutorService()
+                    .schedule(this::check, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the messages of the last check of a target including the file, null if no such target has been
+     * checked since the last build which compiled it
+     */
+    @Nullable
+    public List<CompileMessage> getMessages(@NotNull String path) {
+        final TargetResult result = merged;
+        final String key = CompileDiagnostics.toKey(path);
+        if (!result.files.contains(key)) {
+            return null;
+        }
+        final List<CompileMessage> messages = new ArrayList<>();
+        for (CompileMessage message : result.messages) {
+            if (message.file != null && message.line > 0 && key.equals(CompileDiagnostics.toKey(message.file))) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    private void check() {
+        final Set<String> files;
+        final ProgressIndicator indicator = new EmptyProgressIndicator();
+        synchronized (this) {
+            files = new HashSet<>(savedFiles);
+            savedFiles.clear();
+            running = indicator;
+        }
+
+        boolean changed = false;
+        try {
+            final PureBasicCompilerSettingsState settings = ServiceManager
+                    .getService(PureBasicCompilerSettings.class).getState();
+            final long timeout = settings != null ? TimeUnit.SECONDS.toMillis(settings.getCompileTimeout()) : 0;
+            for (Module module : ModuleManager.getInstance(project).getModules()) {
+                if (!PureBasicModuleType.ID.equals(module.getModuleTypeName())) {
+                    continue;
+                }
+                final VirtualFile[] roots = ModuleRootManager.getInstance(module).getContentRoots();
+                final String rootPath = roots.length > 0 ? roots[0].getCanonicalPath() : null;
+                if (rootPath == null) {
+                    continue;
+                }
+                for (PureBasicTargetSettings target : module.getService(PureBasicModuleSettings.class).getState()
+                        .getTargetOptions()) {
+                    if (indicator.isCanceled()) {
+                        return;
+                    }
+                    changed |= checkTarget(module.getName() + "/" + target.getName(), target, rootPath, files,
+                            timeout, indicator);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Checking the saved files failed", e);
+        } finally {
+            synchronized (this) {
+                if (running == indicator) {
+                    running = null;
+                }
+                // a superseded check has to be repeated for its files along with the new ones
+                if (indicator.isCanceled()) {
+                    savedFiles.addAll(files);
+                }
+            }
+            if (changed) {
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    if (!project.isDisposed()) {
+                        DaemonCodeAnalyzer.getInstance(project).restart();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * @return true if the result of the target has been updated
+     */
+    private boolean checkTarget(@NotNull String id, @NotNull PureBasicTargetSettings target, @NotNull String rootPath,
+                                @NotNull Set<String> savedFiles, long timeout, @NotNull ProgressIndicator indicator) {
+        final PureBasicCompiler sdk = target.getSdk();
+        if (sdk == null) {
+            return false;
+        }
+        final File inputFile = Paths.get(rootPath, target.getInputFile()).toAbsolutePath().toFile();
+        final File sdkHome = sdk.getSdkHome() != null ? new File(sdk.getSdkHome()) : null;
+        final List<File> unit = PureBasicIncludeScanner.scan(inputFile, sdkHome);
+        final Set<String> unitFiles = new HashSet<>();
+        for (File file : unit) {
+            unitFiles.add(CompileDiagnostics.toKey(file.getPath()));
+        }
+        if (Collections.disjoint(unitFiles, savedFiles)) {
+            return false;
+        }
+
+        final String fingerprint = PureBasicTargetFingerprint.computeCheck(sdk, inputFile, unit);
+        if (fingerprint == null) {
+            return false;
+        }
+        List<CompileMessage> messages;
+        synchronized (cache) {
+            messages = cache.get(fingerprint);
+        }
+        if (messages == null) {
+            final List<CompileMessage> output = new ArrayList<>();
+            final int exitCode;
+            try {
+                exitCode = sdk.compile(target, rootPath, new PureBasicCompiler.CompileOptions()
+                        .setCheckOnly(true)
+                        .setIndicator(indicator)
+                        .setTimeout(timeout), output::add);
+            } catch (Exception e) {
+                LOG.warn("Unable to check " + inputFile, e);
+                return false;
+            }
+            // only a check which ran to completion is a result, the messages of an aborted one are incomplete
+            if (exitCode == -1 || indicator.isCanceled()) {
+                return false;
+            }
+            output.removeIf(message -> message.type == CompileMessage.CompileMessageType.INFO);
+            messages = Collections.unmodifiableList(output);
+            synchronized (cache) {
+                cache.put(fingerprint, messages);
+            }
+        }
+
+        synchronized (results) {
+            results.put(id, new TargetResult(unitFiles, messages));
+            updateMerged();
+        }
+        return true;
+    }
+
+    /**
+     * Combines the results of all targets for {@link #getMessages(String)}, must be called holding the lock of the
+     * results.
+     */
+    private void updateMerged() {
+        final Set<String> files = new HashSet<>();
+        final List<CompileMessage> allMessages = new ArrayList<>();
+        for (TargetResult result : results.values()) {
+            files.addAll(result.files);
+            allMessages.addAll(result.messages);
+        }
+        merged = new TargetResult(files, allMessages);
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (this) {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            if (running != null) {
+                running.cancel();
+            }
+        }
+    }
+
+    private static class TargetResult {
+        final Set<String> files;
+        final List<CompileMessage> messages;
+
+        TargetResult(@NotNull Set<String> files, @NotNull List<CompileMessage> messages) {
+            this.files = files;
+            this.messages = messages;
+        }
+    }
+}
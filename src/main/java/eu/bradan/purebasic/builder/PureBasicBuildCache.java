@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the outputs of successful builds in the system cache directory, addressed by the
+ * {@link PureBasicTargetFingerprint} of their inputs. Building a fingerprint which has been built before (e.g. after
+ * switching back to a branch) restores the output from the cache instead of running the compiler.
+ * <p>
+ * Every entry is a directory named after the fingerprint, containing the output files numbered in the order the
+ * compiler reported them. Entries are complete once they appear under their name. The least recently used entries
+ * are evicted as soon as the cache grows beyond its size limit.
+ */
+class PureBasicBuildCache {
+    private static final Logger LOG = Logger.getInstance(PureBasicBuildCache.class);
+    private static final long MAX_SIZE = 2L * 1024 * 1024 * 1024;
+    private static final String TEMP_PREFIX = ".tmp";
+    private static final long TEMP_MAX_AGE = TimeUnit.DAYS.toMillis(1);
+
+    private static PureBasicBuildCache instance;
+
+    private final Path root;
+    private final long maxSize;
+
+    PureBasicBuildCache(@NotNull Path root, long maxSize) {
+        this.root = root;
+        this.maxSize = maxSize;
+    }
+
+    @NotNull
+    static synchronized PureBasicBuildCache getInstance() {
+        if (instance == null) {
+            instance = new PureBasicBuildCache(Paths.get(PathManager.getSystemPath(), "purebasic", "build"), MAX_SIZE);
+        }
+        return instance;
+    }
+
+    /**
+     * Replaces the outputs with the cached ones. Every output file is replaced atomically, so a concurrently
+     * running program never sees a partially written file.
+     *
+     * @return false if there is no cache entry for the fingerprint or it couldn't be restored
+     */
+    boolean restore(@NotNull String fingerprint, @NotNull List<File> outputs) {
+        final Path entry = root.resolve(fingerprint);
+        for (int i = 0; i < outputs.size(); i++) {
+            if (!Files.isRegularFile(entry.resolve(Integer.toString(i)))) {
+                return false;
+            }
+        }
+
+        try {
+            final FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+            for (int i = 0; i < outputs.size(); i++) {
+                final Path target = outputs.get(i).toPath();
+                final Path directory = target.toAbsolutePath().getParent();
+                Files.createDirectories(directory);
+                final Path temp = Files.createTempFile(directory, TEMP_PREFIX, null);
+                try {
+                    Files.copy(entry.resolve(Integer.toString(i)), temp,
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                    Files.setLastModifiedTime(temp, now);
+                    move(temp, target);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            Files.setLastModifiedTime(entry, now);
+            return true;
+        } catch (IOException e) {
+            // most likely evicted in the mean time, the caller compiles instead
+            LOG.warn("Unable to restore " + fingerprint + " from the build cache", e);
+        }
+        return false;
+    }
+
+    /**
+     * Adds the outputs of a successful build. Outputs which aren't regular files (e.g. application bundles) are
+     * not cached.
+     */
+    void store(@NotNull String fingerprint, @NotNull List<File> outputs) {
+        for (File output : outputs) {
+            if (!output.isFile()) {
+                return;
+            }
+        }
+
+        final Path entry = root.resolve(fingerprint);
+        if (Files.isDirectory(entry)) {
+            return;
+        }
+
+        Path temp = null;
+        try {
+            Files.createDirectories(root);
+            temp = Files.createTempDirectory(root, TEMP_PREFIX);
+            for (int i = 0; i < outputs.size(); i++) {
+                Files.copy(outputs.get(i).toPath(), temp.resolve(Integer.toString(i)),
+                        StandardCopyOption.COPY_ATTRIBUTES);
+            }
+            Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException ignored) {
+            // stored by a concurrent build of the same fingerprint
+        } catch (IOException e) {
+            LOG.warn("Unable to add " + fingerprint + " to the build cache", e);
+        } finally {
+            if (temp != null) {
+                delete(temp);
+            }
+        }
+
+        evict();
+    }
+
+    /**
+     * Removes the least recently used entries until the cache fits into its size limit, as well as temporary
+     * directories left behind by a crashed IDE.
+     */
+    synchronized void evict() {
+        final ArrayList<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+            for (Path path : stream) {
+                entries.add(path);
+            }
+        } catch (IOException e) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        long total = 0;
+        final ArrayList<Entry> sized = new ArrayList<>();
+        for (Path path : entries) {
+            final long modified = path.toFile().lastModified();
+            if (path.getFileName().toString().startsWith(TEMP_PREFIX)) {
+                if (now - modified > TEMP_MAX_AGE) {
+                    delete(path);
+                }
+                continue;
+            }
+            final long size = size(path);
+            sized.add(new Entry(path, size, modified));
+            total += size;
+        }
+
+        sized.sort(Comparator.comparingLong(e -> e.lastUsed));
+        for (Entry entry : sized) {
+            if (total <= maxSize) {
+                break;
+            }
+            delete(entry.path);
+            total -= entry.size;
+        }
+    }
+
+    private static void move(@NotNull Path source, @NotNull Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static long size(@NotNull Path path) {
+        try (Stream<Path> files = Files.walk(path)) {
+            return files.filter(Files::isRegularFile).mapToLong(p -> p.toFile().length()).sum();
+        } catch (IOException | UncheckedIOException e) {
+            return 0;
+        }
+    }
+
+    private static void delete(@NotNull Path path) {
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException | UncheckedIOException ignored) {
+        }
+    }
+
+    private static class Entry {
+        final Path path;
+        final long size;
+        final long lastUsed;
+
+        Entry(Path path, long size, long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import com.intellij.util.messages.Topic;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time spent in the phases of a build. The phases of all targets are summed up, so with targets compiled in
+ * parallel the sum of all phases can exceed the total time of the build.
+ * <p>
+ * The metrics of a finished build are kept by the {@link CompileLog} of its project and published on the
+ * {@link #TOPIC} of the project's message bus.
+ */
+public class PureBasicBuildMetrics {
+    public static final Topic<Listener> TOPIC = Topic.create("PureBasic build metrics", Listener.class);
+
+    private final EnumMap<Phase, LongAdder> phases = new EnumMap<>(Phase.class);
+    private final long started;
+    private volatile long total = -1;
+
+    public PureBasicBuildMetrics() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new LongAdder());
+        }
+        started = System.nanoTime();
+    }
+
+    public void add(@NotNull Phase phase, long nanos) {
+        phases.get(phase).add(nanos);
+    }
+
+    /**
+     * Adds the time since start, a value of {@link System#nanoTime()}.
+     */
+    public void addSince(@NotNull Phase phase, long start) {
+        add(phase, System.nanoTime() - start);
+    }
+
+    public long getNanos(@NotNull Phase phase) {
+        return phases.get(phase).sum();
+    }
+
+    public long getMillis(@NotNull Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(getNanos(phase));
+    }
+
+    /**
+     * @return Milliseconds from the start of the build until {@link #finish()}, -1 while it is running.
+     */
+    public long getTotalMillis() {
+        return total < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(total);
+    }
+
+    /**
+     * Marks the build as done.
+     */
+    public void finish() {
+        total = System.nanoTime() - started;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(getTotalMillis()).append(" ms");
+        String separator = " (";
+        for (Map.Entry<Phase, LongAdder> entry : phases.entrySet()) {
+            sb.append(separator)
+                    .append(entry.getKey().name().toLowerCase(Locale.ROOT)).append(' ')
+                    .append(TimeUnit.NANOSECONDS.toMillis(entry.getValue().sum())).append(" ms");
+            separator = ", ";
+        }
+        return sb.append(')').toString();
+    }
+
+    public enum Phase {
+        SAVE,
+        FINGERPRINT,
+        SPAWN,
+        COMPILE,
+        PARSE
+    }
+
+    public interface Listener {
+        void buildFinished(@NotNull PureBasicBuildMetrics metrics);
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import eu.bradan.purebasic.Texts;
+import eu.bradan.purebasic.module.PureBasicModuleSettings;
+import eu.bradan.purebasic.module.PureBasicModuleType;
+import eu.bradan.purebasic.module.PureBasicTargetSettings;
+import eu.bradan.purebasic.settings.PureBasicCompilerSettings;
+import eu.bradan.purebasic.settings.PureBasicCompilerSettingsState;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the targets including a saved file in the background, if enabled in the compiler settings.
+ * <p>
+ * Saves are debounced and coalesced into one build of all affected targets. A build which is still queued or running
+ * when one of the files its targets include is saved is cancelled, which kills its compilers, and its files are built
+ * again along with the new ones. Builds of other targets keep running. Targets which didn't change are skipped by
+ * their fingerprint as in every other build.
+ */
+public class PureBasicBuildOnSave implements Disposable {
+    static final long DEBOUNCE_MS = 500;
+
+    private static final Logger LOG = Logger.getInstance(PureBasicBuildOnSave.class);
+
+    private final Project project;
+    private final Set<String> savedFiles = new HashSet<>();
+    private final List<OnSaveBuild> builds = new ArrayList<>();
+    private ScheduledFuture<?> scheduled;
+
+    public PureBasicBuildOnSave(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static PureBasicBuildOnSave getInstance(@NotNull Project project) {
+        return project.getService(PureBasicBuildOnSave.class);
+    }
+
+    /**
+     * Schedules a build of the targets including the file. A build which is already scheduled is postponed, a
+     * running build of targets including the file is replaced.
+     */
+    public void fileSaved(@NotNull VirtualFile file) {
+        final PureBasicCompilerSettingsState settings = ServiceManager
+                .getService(PureBasicCompilerSettings.class).getState();
+        if (settings == null || !settings.isBuildOnSave()) {
+            return;
+        }
+
+        synchronized (this) {
+            final String key = CompileDiagnostics.toKey(file.getPath());
+            savedFiles.add(key);
+            for (Iterator<OnSaveBuild> it = builds.iterator(); it.hasNext(); ) {
+                final OnSaveBuild build = it.next();
+                if (build.includes(key)) {
+                    build.cancel();
+                    savedFiles.addAll(build.files);
+                    it.remove();
+                }
+            }
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            scheduled = AppExecutorUtil.getAppScheduledExecutorService()
+                    .schedule(this::build, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void build() {
+        final OnSaveBuild build;
+        synchronized (this) {
+            // taken by a build which started while this one was being replaced
+            if (savedFiles.isEmpty()) {
+                return;
+            }
+            build = new OnSaveBuild(new HashSet<>(savedFiles));
+            savedFiles.clear();
+            builds.add(build);
+        }
+
+        final List<AffectedTarget> targets;
+        final Set<String> inputs = new HashSet<>();
+        try {
+            targets = findAffectedTargets(build.files, inputs);
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to find the targets including the saved files", e);
+            finished(build);
+            return;
+        }
+        synchronized (this) {
+            // one of its files was saved again while the targets were searched
+            if (build.cancelled) {
+                return;
+            }
+            build.inputs = inputs;
+        }
+        if (targets.isEmpty()) {
+            finished(build);
+            return;
+        }
+
+        PureBasicBuildProjectTaskRunner.runInBackground(project, Texts.get("buildOnSaveSession"), scheduler -> {
+            synchronized (this) {
+                // one of its files was saved again while the build was queued
+                if (build.cancelled) {
+                    scheduler.cancel();
+                    return;
+                }
+                build.scheduler = scheduler;
+            }
+            for (AffectedTarget target : targets) {
+                scheduler.addTarget(target.module, target.rootPath, target.target);
+            }
+        }).onProcessed(result -> finished(build));
+    }
+
+    private synchronized void finished(@NotNull OnSaveBuild build) {
+        // a cancelled build has handed its files on already
+        builds.remove(build);
+    }
+
+    /**
+     * @param inputs receives the files included by the affected targets
+     */
+    @NotNull
+    private List<AffectedTarget> findAffectedTargets(@NotNull Set<String> files, @NotNull Set<String> inputs) {
+        final List<AffectedTarget> targets = new ArrayList<>();
+        for (Module module : ModuleManager.getInstance(project).getModules()) {
+            if (!PureBasicModuleType.ID.equals(module.getModuleTypeName())) {
+                continue;
+            }
+            final VirtualFile[] roots = ModuleRootManager.getInstance(module).getContentRoots();
+            final String rootPath = roots.length > 0 ? roots[0].getCanonicalPath() : null;
+            if (rootPath == null) {
+                continue;
+            }
+            for (PureBasicTargetSettings target : module.getService(PureBasicModuleSettings.class).getState()
+                    .getTargetOptions()) {
+                final PureBasicCompiler sdk = target.getSdk();
+                if (sdk == null) {
+                    continue;
+                }
+                final File inputFile = Paths.get(rootPath, target.getInputFile()).toAbsolutePath().toFile();
+                final File sdkHome = sdk.getSdkHome() != null ? new File(sdk.getSdkHome()) : null;
+                final List<String> included = new ArrayList<>();
+                for (File file : PureBasicIncludeScanner.scan(inputFile, sdkHome)) {
+                    included.add(CompileDiagnostics.toKey(file.getPath()));
+                }
+                if (!Collections.disjoint(files, included)) {
+                    targets.add(new AffectedTarget(module, rootPath, target));
+                    inputs.addAll(included);
+                }
+            }
+        }
+        return targets;
+    }
+
+    @Override
+    public synchronized void dispose() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        builds.forEach(OnSaveBuild::cancel);
+        builds.clear();
+        savedFiles.clear();
+    }
+
+    /**
+     * A build on save from the moment its files have been taken until it is done.
+     */
+    private static class OnSaveBuild {
+        final Set<String> files;
+        /**
+         * All files included by its targets, null until they are known.
+         */
+        Set<String> inputs;
+        PureBasicBuildScheduler scheduler;
+        boolean cancelled;
+
+        OnSaveBuild(@NotNull Set<String> files) {
+            this.files = files;
+        }
+
+        /**
+         * @return whether the build compiles a target including the file, true as long as the targets aren't known
+         */
+        boolean includes(@NotNull String file) {
+            return inputs == null || inputs.contains(file);
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (scheduler != null) {
+                scheduler.cancel();
+            }
+        }
+    }
+
+    private static class AffectedTarget {
+        final Module module;
+        final String rootPath;
+        final PureBasicTargetSettings target;
+
+        AffectedTarget(@NotNull Module module, @NotNull String rootPath, @NotNull PureBasicTargetSettings target) {
+            this.module = module;
+            this.rootPath = rootPath;
+            this.target = target;
+        }
+    }
+}
@@ -23,16 +23,16 @@
 
 package eu.bradan.purebasic.builder;
 
-import com.intellij.concurrency.JobScheduler;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileEditorManager;
-import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.roots.ModuleRootManager;
-import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowManager;
 import com.intellij.task.ModuleBuildTask;
@@ -40,53 +40,17 @@ import com.intellij.task.ProjectTask;
 import com.intellij.task.ProjectTaskContext;
 import com.intellij.task.ProjectTaskRunner;
 import eu.bradan.purebasic.Texts;
-import eu.bradan.purebasic.module.PureBasicModuleSettings;
 import eu.bradan.purebasic.module.PureBasicModuleType;
-import eu.bradan.purebasic.module.PureBasicTargetSettings;
+import eu.bradan.purebasic.settings.PureBasicCompilerSettings;
+import eu.bradan.purebasic.settings.PureBasicCompilerSettingsState;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.concurrency.AsyncPromise;
 import org.jetbrains.concurrency.Promise;
 
-import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class PureBasicBuildProjectTaskRunner extends ProjectTaskRunner {
-    private boolean compileAllTargets(@NotNull Module module) {
-        final PureBasicModuleSettings settings = module.getService(PureBasicModuleSettings.class);
-        final VirtualFile root = ModuleRootManager.getInstance(module).getContentRoots()[0];
-        final String rootPath = root.getCanonicalPath();
-
-        final CompileLog log = CompileLog.getInstance();
-
-        if (rootPath == null) {
-            log.addLine(String.format(Texts.get("invalidRootPath"), module.getName()));
-            return false;
-        }
-
-        final boolean[] result = {true};
-        for (PureBasicTargetSettings target : settings.getState().getTargetOptions()) {
-            PureBasicCompiler sdk = target.getSdk();
-            if (sdk == null) {
-                // just continue, there might be targets that are only available on a different OS
-                continue;
-            }
-            log.addLine(String.format(Texts.get("compilingModule"), module.getName()));
-            try {
-                int exitCode = sdk.compile(target, rootPath, msg -> {
-                    log.addMessage(msg);
-                    result[0] &= msg.type != CompileMessage.CompileMessageType.ERROR;
-                });
-                log.addLine("");
-                log.addLine(String.format(Texts.get("processExitCode"), exitCode));
-                log.addLine("");
-                log.addLine("");
-            } catch (Exception e) {
-                log.addLine(e.getMessage());
-            }
-        }
-        return result[0];
-    }
-
     @Override
     public boolean canRun(@NotNull ProjectTask projectTask) {
         if (projectTask instanceof ModuleBuildTask) {
@@ -99,7 +63,12 @@ public class PureBasicBuildProjectTaskRunner extends ProjectTaskRunner {
 
     @Override
     public Promise<Result> run(@NotNull Project project, @NotNull ProjectTaskContext context, ProjectTask @NotNull ... tasks) {
-        ApplicationManager.getApplication().invokeAndWait(() -> {
+        final PureBasicBuildMetrics metrics = new PureBasicBuildMetrics();
+        final AsyncPromise<Result> result = new AsyncPromise<>();
+
+        // the build is queued by the same EDT event which saves the documents, so it starts right after saving
+        final long saveStart = System.nanoTime();
+        ApplicationManager.getApplication().invokeLater(() -> {
             final ToolWindow toolWindow = ToolWindowManager.getInstance(project)
                     .getToolWindow("PureBasic Build");
             if (toolWindow != null) {
@@ -110,32 +79,115 @@ public class PureBasicBuildProjectTaskRunner extends ProjectTaskRunner {
             if (editor != null) {
                 FileDocumentManager.getInstance().saveDocumentAsIs(editor.getDocument());
             }
-        }, ModalityState.NON_MODAL);
+            metrics.addSince(PureBasicBuildMetrics.Phase.SAVE, saveStart);
 
-        CompileLog.getInstance().clear();
+            startBuild(project, Texts.get("buildSession"), false, metrics, result, scheduler -> {
+                for (ProjectTask task : tasks) {
+                    if (task instanceof ModuleBuildTask) {
+                        scheduler.addModule(((ModuleBuildTask) task).getModule());
+                    }
+                }
+            });
+        }, ModalityState.NON_MODAL);
+        return result;
+    }
 
+    /**
+     * Builds without showing the tool window or saving any document, for builds the user didn't ask for. The session
+     * is replaceable, see {@link CompileLog}.
+     *
+     * @param jobs adds the targets to the scheduler once the build started
+     */
+    @NotNull
+    static Promise<Result> runInBackground(@NotNull Project project, @NotNull String sessionTitle,
+                                           @NotNull Consumer<PureBasicBuildScheduler> jobs) {
+        final PureBasicBuildMetrics metrics = new PureBasicBuildMetrics();
         final AsyncPromise<Result> result = new AsyncPromise<>();
-        JobScheduler.getScheduler().schedule(() -> {
-            boolean success = true;
-            for (ModuleBuildTask task : Arrays.stream(tasks)
-                    .filter(t -> t instanceof ModuleBuildTask)
-                    .map(t -> (ModuleBuildTask) t)
-                    .toArray(ModuleBuildTask[]::new)) {
-                success &= compileAllTargets(task.getModule());
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (project.isDisposed()) {
+                result.cancel();
+                return;
+            }
+            startBuild(project, sessionTitle, true, metrics, result, jobs);
+        }, ModalityState.NON_MODAL);
+        return result;
+    }
+
+    private static void startBuild(@NotNull Project project, @NotNull String sessionTitle, boolean replaceable,
+                                   @NotNull PureBasicBuildMetrics metrics, @NotNull AsyncPromise<Result> result,
+                                   @NotNull Consumer<PureBasicBuildScheduler> jobs) {
+        final CompileSession session = CompileLog.getInstance(project).startSession(
+                String.format(sessionTitle, System.currentTimeMillis()),
+                ServiceManager.getService(PureBasicCompilerSettings.class).getState().getLogCapacity(), replaceable);
+        ProgressManager.getInstance().run(createBuild(project, session, metrics, result, jobs));
+    }
+
+    @NotNull
+    private static Task.Backgroundable createBuild(@NotNull Project project, @NotNull CompileSession session,
+                                                   @NotNull PureBasicBuildMetrics metrics,
+                                                   @NotNull AsyncPromise<Result> result,
+                                                   @NotNull Consumer<PureBasicBuildScheduler> jobs) {
+        return new Task.Backgroundable(project, Texts.get("buildTitle"), true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                final PureBasicCompilerSettingsState settings = ServiceManager
+                        .getService(PureBasicCompilerSettings.class).getState();
+                final PureBasicBuildScheduler scheduler = new PureBasicBuildScheduler(
+                        settings.getEffectiveBuildWorkers(),
+                        TimeUnit.SECONDS.toMillis(settings.getCompileTimeout()),
+                        indicator, session, metrics);
+                jobs.accept(scheduler);
+                final boolean finalSuccess = scheduler.run();
+                final boolean aborted = scheduler.isCancelled();
+
+                final CompileLog log = CompileLog.getInstance(project);
+                log.finishMetrics(metrics);
+                session.addLine(String.format(Texts.get("buildMetrics"), metrics));
+                log.finishSession(session);
+
+                result.setResult(createResult(finalSuccess, aborted));
             }
-            boolean finalSuccess = success;
-            result.setResult(new Result() {
-                @Override
-                public boolean isAborted() {
-                    return false;
+
+            @Override
+            public void onCancel() {
+                if (!result.isDone()) {
+                    result.setResult(createResult(false, true));
                 }
+            }
 
-                @Override
-                public boolean hasErrors() {
-                    return finalSuccess;
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                super.onThrowable(error);
+                if (!result.isDone()) {
+                    result.setError(error);
                 }
-            });
-        }, 1, TimeUnit.SECONDS);
-        return result;
+            }
+
+            @Override
+            public void onFinished() {
+                // whatever ended the task, the session and the promise must not be left open
+                if (!session.isFinished() && !project.isDisposed()) {
+                    CompileLog.getInstance(project).finishSession(session);
+                }
+                if (!result.isDone()) {
+                    result.setResult(createResult(false, true));
+                }
+            }
+        };
+    }
+
+    @NotNull
+    private static Result createResult(boolean success, boolean aborted) {
+        return new Result() {
+            @Override
+            public boolean isAborted() {
+                return aborted;
+            }
+
+            @Override
+            public boolean hasErrors() {
+                return !success && !aborted;
+            }
+        };
     }
 }
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import eu.bradan.purebasic.Texts;
+import eu.bradan.purebasic.module.PureBasicModuleSettings;
+import eu.bradan.purebasic.module.PureBasicTargetFingerprints;
+import eu.bradan.purebasic.module.PureBasicTargetSettings;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compiles the targets of several modules with a bounded amount of compilers running at the same time.
+ * <p>
+ * Targets are independent of each other, except when they write the same output file: those are compiled one
+ * after another in a single job. The output of a target is added to the log as it arrives and tagged with the
+ * target, so the messages of parallel targets interleave in the log but can be filtered by target.
+ * <p>
+ * Builds running at the same time, e.g. a build on save started while the user builds the project, compile the
+ * targets of an output file one after another as well. The second build checks the fingerprint only once the first
+ * one is done, so it finds the target up to date instead of compiling it again.
+ * <p>
+ * Cancelling the progress indicator kills the running compilers and skips the targets which haven't started yet.
+ */
+class PureBasicBuildScheduler {
+    private static final Logger LOG = Logger.getInstance(PureBasicBuildScheduler.class);
+    private static final long LOCK_POLL_MS = 100;
+    // shared by all builds of all projects, the compilers write to the file system
+    private static final ConcurrentHashMap<String, ReentrantLock> OUTPUT_LOCKS = new ConcurrentHashMap<>();
+
+    private final int workers;
+    private final long timeout;
+    private final ProgressIndicator indicator;
+    private final CompileSession log;
+    private final PureBasicBuildMetrics metrics;
+    private final LinkedHashMap<String, List<TargetJob>> jobsByOutput = new LinkedHashMap<>();
+    private final AtomicInteger finished = new AtomicInteger();
+    private int total;
+    private boolean success = true;
+
+    /**
+     * @param timeout milliseconds after which a single compiler is killed, 0 for no limit
+     */
+    PureBasicBuildScheduler(int workers, long timeout, @NotNull ProgressIndicator indicator,
+                            @NotNull CompileSession log, @NotNull PureBasicBuildMetrics metrics) {
+        this.workers = Math.max(1, workers);
+        this.timeout = timeout;
+        this.indicator = indicator;
+        this.log = log;
+        this.metrics = metrics;
+    }
+
+    void addModule(@NotNull Module module) {
+        final PureBasicModuleSettings settings = module.getService(PureBasicModuleSettings.class);
+        final VirtualFile root = ModuleRootManager.getInstance(module).getContentRoots()[0];
+        final String rootPath = root.getCanonicalPath();
+
+        if (rootPath == null) {
+            log.addLine(String.format(Texts.get("invalidRootPath"), module.getName()));
+            success = false;
+            return;
+        }
+
+        for (PureBasicTargetSettings target : settings.getState().getTargetOptions()) {
+            addTarget(module, rootPath, target);
+        }
+    }
+
+    void addTarget(@NotNull Module module, @NotNull String rootPath, @NotNull PureBasicTargetSettings target) {
+        final PureBasicCompiler sdk = target.getSdk();
+        if (sdk == null) {
+            // just skip it, there might be targets that are only available on a different OS
+            return;
+        }
+        final String output = Paths.get(rootPath, target.getOutputFile()).toAbsolutePath().normalize().toString();
+        jobsByOutput.computeIfAbsent(output, k -> new ArrayList<>())
+                .add(new TargetJob(module, rootPath, target, sdk));
+        total++;
+    }
+
+    /**
+     * Runs all added targets and blocks until they are done.
+     *
+     * @return false if any target reported an error or the build has been cancelled
+     */
+    boolean run() {
+        indicator.setIndeterminate(false);
+        indicator.setFraction(0.0);
+
+        final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("PureBasic Build",
+                workers);
+        final ArrayList<Future<Boolean>> futures = new ArrayList<>();
+        jobsByOutput.forEach((output, jobs) -> futures.add(executor.submit(() -> {
+            final ReentrantLock lock = OUTPUT_LOCKS.computeIfAbsent(output, k -> new ReentrantLock());
+            if (!lock(lock)) {
+                return false;
+            }
+            try {
+                boolean result = true;
+                for (TargetJob job : jobs) {
+                    if (indicator.isCanceled()) {
+                        return false;
+                    }
+                    result &= job.compile();
+                    indicator.setFraction((double) finished.incrementAndGet() / total);
+                }
+                return result;
+            } finally {
+                lock.unlock();
+            }
+        })));
+        executor.shutdown();
+
+        for (Future<Boolean> future : futures) {
+            try {
+                success &= future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                LOG.warn("Compiling a target failed", e.getCause());
+                success = false;
+            }
+        }
+        return success && !indicator.isCanceled();
+    }
+
+    /**
+     * Waits until no other build writes the output file of the lock.
+     *
+     * @return false if the build has been cancelled while waiting
+     */
+    private boolean lock(@NotNull ReentrantLock lock) throws InterruptedException {
+        while (!lock.tryLock(LOCK_POLL_MS, TimeUnit.MILLISECONDS)) {
+            if (indicator.isCanceled()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Kills the running compilers and skips the remaining targets.
+     */
+    void cancel() {
+        indicator.cancel();
+    }
+
+    boolean isCancelled() {
+        return indicator.isCanceled();
+    }
+
+    private class TargetJob {
+        private final Module module;
+        private final String rootPath;
+        private final PureBasicTargetSettings target;
+        private final PureBasicCompiler sdk;
+
+        TargetJob(Module module, String rootPath, PureBasicTargetSettings target, PureBasicCompiler sdk) {
+            this.module = module;
+            this.rootPath = rootPath;
+            this.target = target;
+            this.sdk = sdk;
+        }
+
+        boolean compile() {
+            final String key = module.getName() + "/" + target.getName();
+            final ArrayList<CompileMessage> diagnostics = new ArrayList<>();
+            final boolean[] result = {true};
+
+            final PureBasicTargetFingerprints fingerprints = module.getService(PureBasicTargetFingerprints.class);
+            final File inputFile = Paths.get(rootPath, target.getInputFile()).toAbsolutePath().toFile();
+            final File outputFile = Paths.get(rootPath, target.getOutputFile()).toAbsolutePath().toFile();
+            final List<File> outputs = sdk.getOutputs(outputFile);
+            final long fingerprintStart = System.nanoTime();
+            final String fingerprint = PureBasicTargetFingerprint.compute(sdk, inputFile, outputFile);
+            metrics.addSince(PureBasicBuildMetrics.Phase.FINGERPRINT, fingerprintStart);
+            if (fingerprints.isUpToDate(target.getName(), fingerprint,
+                    PureBasicTargetFingerprint.stampOutput(outputs))) {
+                log.addMessage(info(String.format(Texts.get("targetUpToDate"), target.getName(), module.getName())));
+                return true;
+            }
+
+            final String title = String.format(Texts.get("compilingTarget"), target.getName(), module.getName());
+            indicator.setText2(title);
+            log.addMessage(key, info(title));
+            final PureBasicCompiler.CompileOptions options = new PureBasicCompiler.CompileOptions()
+                    .setFingerprint(fingerprint)
+                    .setIndicator(indicator)
+                    .setTimeout(timeout)
+                    .setMetrics(metrics);
+            try {
+                int exitCode = sdk.compile(target, rootPath, options, msg -> {
+                    log.addMessage(key, msg);
+                    if (msg.type != CompileMessage.CompileMessageType.INFO) {
+                        diagnostics.add(msg);
+                    }
+                    result[0] &= msg.type != CompileMessage.CompileMessageType.ERROR;
+                });
+                fingerprints.update(target.getName(), result[0] && exitCode == 0 ? fingerprint : null,
+                        PureBasicTargetFingerprint.stampOutput(outputs));
+                log.addMessage(key, info(""));
+                log.addMessage(key, info(String.format(Texts.get("processExitCode"), exitCode)));
+                log.addMessage(key, info(""));
+                log.addMessage(key, info(""));
+            } catch (Exception e) {
+                fingerprints.update(target.getName(), null, null);
+                log.addMessage(key, info(e.getMessage()));
+            }
+            if (!options.isRestored()) {
+                // like an up to date target, a restored one keeps the diagnostics of the build before
+                log.finishTarget(key, diagnostics);
+            }
+            return result[0];
+        }
+
+        @NotNull
+        private CompileMessage info(String s) {
+            return new CompileMessage(CompileMessage.CompileMessageType.INFO, s, null, -1);
+        }
+    }
+}
@@ -24,26 +24,69 @@
 package eu.bradan.purebasic.builder;
 
 import com.intellij.icons.AllIcons;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.ui.ColoredListCellRenderer;
+import com.intellij.ui.DocumentAdapter;
 import com.intellij.ui.JBColor;
+import com.intellij.ui.SearchTextField;
 import com.intellij.ui.SimpleTextAttributes;
 import com.intellij.ui.components.JBList;
+import eu.bradan.purebasic.Texts;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 import java.awt.*;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
 
 public class PureBasicBuildToolWindow extends JPanel {
     private JPanel toolWindowContent;
     private JBList<CompileMessage> listCompileResult;
     private JScrollPane scrollPane;
+    private JLabel labelMetrics;
+    private JComboBox<CompileSession> comboSessions;
 
-    public PureBasicBuildToolWindow(ToolWindow toolWindow) {
+    private final Project project;
+    private final CompileLog log;
+    private final SearchTextField searchField = new SearchTextField();
+    private final EnumMap<CompileMessage.CompileMessageType, JCheckBox> typeFilters =
+            new EnumMap<>(CompileMessage.CompileMessageType.class);
+    private final JComboBox<String> comboFiles = new JComboBox<>();
+    private final JComboBox<String> comboTargets = new JComboBox<>();
+    private CompileSessionView view;
+    // the cells measured at once, the others are measured once they are scrolled into view
+    private static final int MEASURED_CELLS = 100;
+    private final ListDataListener cellWidthUpdater = new ListDataListener() {
+        @Override
+        public void intervalAdded(ListDataEvent e) {
+            updateCellWidth(e.getIndex0(), Math.min(e.getIndex1(), e.getIndex0() + MEASURED_CELLS - 1), true);
+        }
+
+        @Override
+        public void intervalRemoved(ListDataEvent e) {
+            updateVisibleCellWidth(false);
+        }
+
+        @Override
+        public void contentsChanged(ListDataEvent e) {
+            updateVisibleCellWidth(false);
+        }
+    };
+
+    public PureBasicBuildToolWindow(Project project, ToolWindow toolWindow) {
         this.setLayout(new BorderLayout());
         this.add(toolWindowContent, BorderLayout.CENTER);
 
@@ -51,15 +94,43 @@ public class PureBasicBuildToolWindow extends JPanel {
         cell.setBackground(null);
         cell.setHorizontalAlignment(JLabel.LEADING);
 
-        listCompileResult.setModel(CompileLog.getInstance());
+        this.project = project;
+        log = CompileLog.getInstance(project);
         listCompileResult.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         listCompileResult.setCellRenderer(new CompilerMessageCellRenderer());
+
+        // Without a fixed cell size the list measures every cell whenever the model changes, which doesn't scale
+        // to large logs. The height is taken from an error message (those have an icon), the width grows with
+        // the cells being added and shown.
+        final CompileMessage prototype = new CompileMessage(CompileMessage.CompileMessageType.ERROR, "X", null, -1);
+        listCompileResult.setFixedCellHeight(getCellSize(prototype, 0).height);
+        scrollPane.getViewport().addChangeListener(e -> updateVisibleCellWidth(true));
+
+        this.add(createFilterBar(), BorderLayout.NORTH);
+
+        // every build has its own session, the newest one is shown unless an older one is picked
+        comboSessions.addActionListener(e -> showSession((CompileSession) comboSessions.getSelectedItem()));
+        updateSessions();
+        project.getMessageBus().connect(toolWindow.getDisposable())
+                .subscribe(CompileLog.TOPIC, new CompileLog.Listener() {
+                    @Override
+                    public void sessionStarted(@NotNull CompileSession session) {
+                        EventQueue.invokeLater(PureBasicBuildToolWindow.this::updateSessions);
+                    }
+
+                    @Override
+                    public void sessionFinished(@NotNull CompileSession session) {
+                        // the new diagnostics are marked
+                        EventQueue.invokeLater(listCompileResult::repaint);
+                    }
+                });
+
         listCompileResult.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
                 final CompileMessage msg = listCompileResult.getSelectedValue();
                 if (msg != null)
-                    msg.navigateTo();
+                    msg.navigateTo(project);
             }
         });
         listCompileResult.addKeyListener(new KeyAdapter() {
@@ -68,14 +139,185 @@ public class PureBasicBuildToolWindow extends JPanel {
                 if (e.getKeyCode() == KeyEvent.VK_ENTER) {
                     final CompileMessage msg = listCompileResult.getSelectedValue();
                     if (msg != null)
-                        msg.navigateTo();
+                        msg.navigateTo(project);
                 }
             }
         });
+
+        labelMetrics.setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 4));
+        showMetrics(log.getLastMetrics());
+        project.getMessageBus().connect(toolWindow.getDisposable())
+                .subscribe(PureBasicBuildMetrics.TOPIC, metrics -> EventQueue.invokeLater(() -> showMetrics(metrics)));
+    }
+
+    private void updateSessions() {
+        final DefaultComboBoxModel<CompileSession> sessions = new DefaultComboBoxModel<>();
+        // newest first
+        for (CompileSession session : log.getSessions()) {
+            sessions.insertElementAt(session, 0);
+        }
+        if (sessions.getSize() > 0) {
+            sessions.setSelectedItem(sessions.getElementAt(0));
+        }
+        comboSessions.setModel(sessions);
+        showSession((CompileSession) sessions.getSelectedItem());
+    }
+
+    private void showSession(@Nullable CompileSession session) {
+        if (view != null && view.getSession() == session) {
+            return;
+        }
+        if (view != null) {
+            view.dispose();
+        }
+        resetFilterItems(comboFiles, Texts.get("filterAllFiles"));
+        resetFilterItems(comboTargets, Texts.get("filterAllTargets"));
+        view = session != null ? new CompileSessionView(session) : null;
+        if (view != null) {
+            view.setQuery(createQuery());
+        }
+
+        final ListModel<CompileMessage> model = view != null ? view : new DefaultListModel<>();
+        listCompileResult.getModel().removeListDataListener(cellWidthUpdater);
+        listCompileResult.setModel(model);
+        updateVisibleCellWidth(false);
+        model.addListDataListener(cellWidthUpdater);
+    }
+
+    /**
+     * The search and the filters are answered by the index of the session, so they are applied on every keystroke.
+     */
+    @NotNull
+    private JComponent createFilterBar() {
+        final JPanel bar = new JPanel(new FlowLayout(FlowLayout.LEADING, 4, 2));
+        searchField.addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(@NotNull DocumentEvent e) {
+                applyFilter();
+            }
+        });
+        bar.add(searchField);
+
+        typeFilters.put(CompileMessage.CompileMessageType.ERROR, new JCheckBox(Texts.get("filterErrors"), true));
+        typeFilters.put(CompileMessage.CompileMessageType.WARN, new JCheckBox(Texts.get("filterWarnings"), true));
+        typeFilters.put(CompileMessage.CompileMessageType.INFO, new JCheckBox(Texts.get("filterInfo"), true));
+        for (JCheckBox checkBox : typeFilters.values()) {
+            checkBox.addActionListener(e -> applyFilter());
+            bar.add(checkBox);
+        }
+
+        // the files and targets are only known once messages arrived, they are collected when the popup opens
+        for (JComboBox<String> combo : Arrays.asList(comboFiles, comboTargets)) {
+            combo.addActionListener(e -> applyFilter());
+            combo.addPopupMenuListener(new PopupMenuListener() {
+                @Override
+                public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                    updateFilterItems();
+                }
+
+                @Override
+                public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+                }
+
+                @Override
+                public void popupMenuCanceled(PopupMenuEvent e) {
+                }
+            });
+            bar.add(combo);
+        }
+        return bar;
+    }
+
+    private static void resetFilterItems(@NotNull JComboBox<String> combo, @NotNull String all) {
+        combo.setModel(new DefaultComboBoxModel<>(new String[]{all}));
+    }
+
+    private void updateFilterItems() {
+        if (view == null) {
+            return;
+        }
+        final CompileSession session = view.getSession();
+        updateFilterItems(comboFiles, session.getFiles());
+        updateFilterItems(comboTargets, session.getTargets());
+    }
+
+    private static void updateFilterItems(@NotNull JComboBox<String> combo, @NotNull List<String> items) {
+        final DefaultComboBoxModel<String> model = (DefaultComboBoxModel<String>) combo.getModel();
+        // the first item stands for no filter
+        for (String item : items) {
+            if (model.getIndexOf(item) < 0) {
+                model.addElement(item);
+            }
+        }
+    }
+
+    @Nullable
+    private static String getFilterItem(@NotNull JComboBox<String> combo) {
+        return combo.getSelectedIndex() > 0 ? (String) combo.getSelectedItem() : null;
+    }
+
+    @NotNull
+    private CompileLogIndex.Query createQuery() {
+        final EnumSet<CompileMessage.CompileMessageType> types = EnumSet.noneOf(CompileMessage.CompileMessageType.class);
+        typeFilters.forEach((type, checkBox) -> {
+            if (checkBox.isSelected()) {
+                types.add(type);
+            }
+        });
+        return new CompileLogIndex.Query(searchField.getText(), types, getFilterItem(comboFiles),
+                getFilterItem(comboTargets));
+    }
+
+    private void applyFilter() {
+        if (view != null) {
+            // the rows change in place, so a selected row would point to another message
+            listCompileResult.clearSelection();
+            view.setQuery(createQuery());
+        }
+    }
+
+    @NotNull
+    private Dimension getCellSize(CompileMessage message, int index) {
+        return listCompileResult.getCellRenderer()
+                .getListCellRendererComponent(listCompileResult, message, index, false, false)
+                .getPreferredSize();
+    }
+
+    /**
+     * Measures the given cells. The width only grows with them, unless it is measured anew.
+     */
+    private void updateCellWidth(int index0, int index1, boolean grow) {
+        final ListModel<CompileMessage> model = listCompileResult.getModel();
+        int width = grow ? Math.max(listCompileResult.getFixedCellWidth(), 0) : 0;
+        for (int i = Math.max(index0, 0); i <= index1 && i < model.getSize(); i++) {
+            width = Math.max(width, getCellSize(model.getElementAt(i), i).width);
+        }
+        listCompileResult.setFixedCellWidth(width);
+    }
+
+    private void updateVisibleCellWidth(boolean grow) {
+        int first = 0;
+        int last = MEASURED_CELLS - 1;
+        // without a fixed width the list would measure every cell to find the visible ones
+        if (listCompileResult.getFixedCellWidth() >= 0) {
+            first = Math.max(listCompileResult.getFirstVisibleIndex(), 0);
+            last = listCompileResult.getLastVisibleIndex();
+            if (last < first || last - first >= MEASURED_CELLS) {
+                last = first + MEASURED_CELLS - 1;
+            }
+        }
+        updateCellWidth(first, last, grow);
+    }
+
+    private void showMetrics(PureBasicBuildMetrics metrics) {
+        labelMetrics.setText(metrics != null ? String.format(Texts.get("buildMetrics"), metrics) : "");
     }
 
     public void clear() {
-        CompileLog.getInstance().clear();
+        final CompileSession session = log.getCurrentSession();
+        if (session != null) {
+            session.clear();
+        }
     }
 
     public JPanel getContent() {
@@ -87,6 +329,13 @@ public class PureBasicBuildToolWindow extends JPanel {
         protected void customizeCellRenderer(@NotNull JList list, CompileMessage value,
                                              int index, boolean selected, boolean hasFocus) {
             if (value != null) {
+                final CompileDiagnosticsDiff diff = list.getModel() instanceof CompileSessionView
+                        ? ((CompileSessionView) list.getModel()).getSession().getDiff() : null;
+                if (diff != null && diff.isNew(value)) {
+                    append(Texts.get("messageNew") + " ", new SimpleTextAttributes(
+                            SimpleTextAttributes.STYLE_BOLD,
+                            JBColor.RED));
+                }
                 if (value.type == CompileMessage.CompileMessageType.ERROR) {
                     setIcon(AllIcons.Ide.FatalError);
                     append(value.message, new SimpleTextAttributes(
@@ -28,14 +28,19 @@ import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowFactory;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
+import eu.bradan.purebasic.Texts;
 import org.jetbrains.annotations.NotNull;
 
 public class PureBasicBuildToolWindowFactory implements ToolWindowFactory {
     @Override
     public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
-        PureBasicBuildToolWindow pbToolWindow = new PureBasicBuildToolWindow(toolWindow);
+        PureBasicBuildToolWindow pbToolWindow = new PureBasicBuildToolWindow(project, toolWindow);
         ContentFactory contentFactory = ContentFactory.getInstance();
         Content content = contentFactory.createContent(pbToolWindow, "PureBasic Build", false);
         toolWindow.getContentManager().addContent(content);
+
+        PureBasicProblemsPanel problemsPanel = new PureBasicProblemsPanel(project, toolWindow);
+        toolWindow.getContentManager().addContent(
+                contentFactory.createContent(problemsPanel, Texts.get("problemsTab"), false));
     }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import com.intellij.lang.annotation.AnnotationHolder;
+import com.intellij.lang.annotation.ExternalAnnotator;
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Shows the diagnostics of the last build in the editor. The compiler isn't run here, the messages are taken from
+ * the last finished build, merged per target like the {@link CompileLog} compares builds, or from the
+ * {@link PureBasicBackgroundCheck} of the file if it has been checked since.
+ */
+public class PureBasicCompileAnnotator extends ExternalAnnotator<List<CompileMessage>, List<CompileMessage>> {
+    @Nullable
+    @Override
+    public List<CompileMessage> collectInformation(@NotNull PsiFile file) {
+        final VirtualFile vFile = file.getVirtualFile();
+        if (vFile == null) {
+            return null;
+        }
+        // a background check after the last build is more recent
+        List<CompileMessage> messages = PureBasicBackgroundCheck.getInstance(file.getProject())
+                .getMessages(vFile.getPath());
+        if (messages == null) {
+            messages = CompileLog.getInstance(file.getProject()).getBuildMessages(vFile.getPath());
+        }
+        return messages.isEmpty() ? null : messages;
+    }
+
+    @Nullable
+    @Override
+    public List<CompileMessage> doAnnotate(List<CompileMessage> messages) {
+        return messages;
+    }
+
+    @Override
+    public void apply(@NotNull PsiFile file, List<CompileMessage> messages, @NotNull AnnotationHolder holder) {
+        final Document document = file.getViewProvider().getDocument();
+        if (document == null || messages == null) {
+            return;
+        }
+
+        for (CompileMessage message : messages) {
+            // the file may have been edited since the build
+            if (message.line > document.getLineCount()) {
+                continue;
+            }
+            int start = document.getLineStartOffset(message.line - 1);
+            final int end = document.getLineEndOffset(message.line - 1);
+            final CharSequence text = document.getCharsSequence();
+            while (start < end && Character.isWhitespace(text.charAt(start))) {
+                start++;
+            }
+
+            final HighlightSeverity severity = message.type == CompileMessage.CompileMessageType.ERROR
+                    ? HighlightSeverity.ERROR : HighlightSeverity.WARNING;
+            holder.newAnnotation(severity, message.getDescription())
+                    .range(new TextRange(start, end))
+                    .create();
+        }
+    }
+}
@@ -23,8 +23,12 @@
 
 package eu.bradan.purebasic.builder;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import eu.bradan.purebasic.PureBasicUtil;
+import eu.bradan.purebasic.Texts;
 import eu.bradan.purebasic.module.PureBasicTargetSettings;
 import eu.bradan.purebasic.settings.PureBasicCompilerSettings;
 import org.jetbrains.annotations.NotNull;
@@ -32,24 +36,42 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class PureBasicCompiler {
     private static final Logger LOG = Logger.getInstance(PureBasicCompiler.class);
     private static final HashMap<String, PureBasicCompiler> compilerByHome = new HashMap<>();
+    private static final long POLL_INTERVAL_MS = 100;
+    // a check on a standby compiler which takes longer is taken as unsupported, if no timeout has been set
+    private static final long STANDBY_CHECK_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final Pattern PATTERN_FUNCTION =
+            Pattern.compile("([a-zA-Z_][a-zA-Z_0-9]*)\\s*\\(([^)]*)\\)\\s*-\\s*(.*)");
     private static PureBasicCompiler defaultCompiler = null;
+    private final PureBasicCompilerDaemonPool daemons;
     private String sdkHome;
     private File compiler;
     private String labels;
+    private PureBasicCompilerInfo info = null;
+    private volatile boolean standbyCheckFailed = false;
 
     private PureBasicCompiler(String sdkHome, File compiler) {
         this.sdkHome = sdkHome;
         this.compiler = compiler;
         this.labels = "";
+        this.daemons = new PureBasicCompilerDaemonPool(() -> this.compiler != null
+                ? run(new String[]{this.compiler.getAbsolutePath(), "--standby"})
+                : null);
     }
 
     @Nullable
@@ -131,9 +153,12 @@ public class PureBasicCompiler {
         return sdkHome;
     }
 
-    public void setSdkHome(String sdkHome) {
+    public synchronized void setSdkHome(String sdkHome) {
         this.sdkHome = sdkHome;
         this.compiler = getCompilerExecutable(sdkHome);
+        this.info = null;
+        this.standbyCheckFailed = false;
+        this.daemons.clear();
     }
 
     public String getLabels() {
@@ -176,7 +201,7 @@ public class PureBasicCompiler {
     }
 
     @Nullable
-    public String getVersionString() {
+    private String probeVersionString() {
         Process proc = run(new String[]{compiler.getAbsolutePath(), "--version"});
         if (proc == null) {
             return null;
@@ -185,52 +210,88 @@ public class PureBasicCompiler {
         try (BufferedReader outputReader = new BufferedReader(new InputStreamReader(proc.getInputStream()))) {
             return outputReader.readLine();
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.warn("Unable to probe " + compiler, e);
         }
         return null;
     }
 
+    /**
+     * @return The identity of the compiler executable. The executable is only launched again if it has been
+     * replaced since the last probe.
+     */
+    @Nullable
+    public synchronized PureBasicCompilerInfo getInfo() {
+        if (compiler == null) {
+            return null;
+        }
+        if (info == null || !info.isUpToDate(compiler)) {
+            info = PureBasicCompilerInfo.create(probeVersionString(), compiler);
+        }
+        return info;
+    }
+
+    /**
+     * @return A hash over the compiler executable and its residents, it changes whenever the available declarations
+     * do. Null if there is no compiler or it can't be read.
+     */
+    @Nullable
+    public String getIdentity() {
+        final PureBasicCompilerInfo info = getInfo();
+        return info != null ? info.getIdentity() : null;
+    }
+
+    @Nullable
+    public String getVersionString() {
+        final PureBasicCompilerInfo info = getInfo();
+        return info != null ? info.getVersionString() : null;
+    }
+
     public boolean isPureBasic() {
-        String v = getVersionString();
-        if (v == null)
-            v = "";
-        return v.startsWith("PureBasic");
+        final PureBasicCompilerInfo info = getInfo();
+        return info != null && info.getFlavor() == PureBasicCompilerInfo.Flavor.PUREBASIC;
     }
 
     public boolean isSpiderBasic() {
-        String v = getVersionString();
-        if (v == null)
-            v = "";
-        return v.startsWith("SpiderBasic");
+        final PureBasicCompilerInfo info = getInfo();
+        return info != null && info.getFlavor() == PureBasicCompilerInfo.Flavor.SPIDERBASIC;
     }
 
+    /**
+     * Reports all functions, constants, structures and interfaces the SDK knows about. They are read from the
+     * on-disk cache if possible, otherwise a standby compiler is queried and the result is cached.
+     */
     public void getSdkDeclarations(DeclarationsCollector collector) {
-        Process proc = run(new String[]{compiler.getAbsolutePath(), "--standby"});
-        if (proc == null) {
+        final PureBasicCompilerInfo info = getInfo();
+        final PureBasicDeclarationCache cache = info != null
+                ? PureBasicDeclarationCache.forCompiler(info)
+                : null;
+        if (cache == null) {
+            querySdkDeclarations(collector);
             return;
         }
 
-        try (OutputStreamWriter writer = new OutputStreamWriter(proc.getOutputStream());
-             BufferedReader reader = new BufferedReader(new InputStreamReader(proc.getInputStream()))) {
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                if ("READY".equals(line)) {
-                    break;
-                }
+        if (!cache.load(collector)) {
+            final PureBasicDeclarationCache.Recorder recorder = cache.record(collector);
+            if (querySdkDeclarations(recorder)) {
+                recorder.save();
             }
+        }
+    }
 
-            // Functions
-            final Pattern patternFunction = Pattern.compile("([a-zA-Z_][a-zA-Z_0-9]*)\\s*\\(([^)]*)\\)\\s*-\\s*(.*)");
-            writer.write("FUNCTIONLIST\n");
-            writer.flush();
-            reader.readLine(); // skip the amount
-            while ((line = reader.readLine()) != null) {
-                if ("OUTPUT\tCOMPLETE".equals(line)) {
-                    break;
-                }
+    private boolean querySdkDeclarations(DeclarationsCollector collector) {
+        final PureBasicCompilerDaemon daemon;
+        try {
+            daemon = daemons.acquire();
+        } catch (IOException e) {
+            LOG.warn("Unable to query the SDK declarations of " + sdkHome, e);
+            return false;
+        }
 
-                final Matcher m = patternFunction.matcher(line);
+        boolean reusable = false;
+        try {
+            // Functions
+            for (String line : daemon.queryList("FUNCTIONLIST")) {
+                final Matcher m = PATTERN_FUNCTION.matcher(line);
                 if (m.matches()) {
                     final String name = m.group(1);
                     final String args = m.group(2);
@@ -240,14 +301,7 @@ public class PureBasicCompiler {
             }
 
             // Constants
-            writer.write("CONSTANTLIST\n");
-            writer.flush();
-            reader.readLine(); // skip the amount
-            while ((line = reader.readLine()) != null) {
-                if ("OUTPUT\tCOMPLETE".equals(line)) {
-                    break;
-                }
-
+            for (String line : daemon.queryList("CONSTANTLIST")) {
                 final String[] fields = line.split("\t");
                 if (fields.length == 3) {
                     collector.declareConstant(Integer.parseInt(fields[0]), fields[1], fields[2]);
@@ -255,61 +309,158 @@ public class PureBasicCompiler {
             }
 
             // Structures
-            LinkedList<String> structures = new LinkedList<>();
-            writer.write("STRUCTURELIST\n");
-            writer.flush();
-            reader.readLine(); // skip the amount
-            while ((line = reader.readLine()) != null) {
-                if ("OUTPUT\tCOMPLETE".equals(line)) {
-                    break;
-                }
-                structures.add(line);
-            }
+            daemon.queryPipelined("STRUCTURE", daemon.queryList("STRUCTURELIST"), collector::declareStructure);
 
-            for (String structure : structures) {
-                writer.write("STRUCTURE\t" + structure + "\n");
-                writer.flush();
-                LinkedList<String> content = new LinkedList<>();
-                while ((line = reader.readLine()) != null) {
-                    if ("OUTPUT\tCOMPLETE".equals(line)) {
-                        break;
-                    }
-                    content.add(line);
-                }
-                collector.declareStructure(structure, content);
+            // Interfaces
+            daemon.queryPipelined("INTERFACE", daemon.queryList("INTERFACELIST"), collector::declareInterface);
+            reusable = true;
+        } catch (IOException e) {
+            LOG.warn("Unable to query the SDK declarations of " + sdkHome, e);
+        } finally {
+            if (reusable) {
+                daemons.release(daemon);
+            } else {
+                daemons.discard(daemon);
             }
+        }
+        return reusable;
+    }
 
-            // Interfaces
-            LinkedList<String> interfaces = new LinkedList<>();
-            writer.write("INTERFACELIST\n");
-            writer.flush();
-            reader.readLine(); // skip the amount
-            while ((line = reader.readLine()) != null) {
-                if ("OUTPUT\tCOMPLETE".equals(line)) {
-                    break;
-                }
-                interfaces.add(line);
+    /**
+     * Creates the command line to compile inputFile into outputFile. The command is run in the directory of
+     * outputFile.
+     *
+     * @return null if the compiler flavor is unknown
+     */
+    @Nullable
+    String[] createCompileCommand(@NotNull File inputFile, @NotNull File outputFile) {
+        final File workingDir = outputFile.getParentFile();
+
+        final PureBasicCompilerInfo info = getInfo();
+        final PureBasicCompilerInfo.Flavor flavor = info != null
+                ? info.getFlavor()
+                : PureBasicCompilerInfo.Flavor.UNKNOWN;
+        if (flavor == PureBasicCompilerInfo.Flavor.PUREBASIC) {
+            return new String[]{
+                    compiler.getAbsolutePath(),
+                    "-e", outputFile.toString(),
+                    inputFile.toString()
+            };
+        } else if (flavor == PureBasicCompilerInfo.Flavor.SPIDERBASIC) {
+            File jsFile = getJsFile(outputFile);
+            File depDir = new File(workingDir, "spiderbasic");
+            final ArrayList<String> command = new ArrayList<>(Arrays.asList(
+                    compiler.getAbsolutePath(),
+                    "-o", PureBasicUtil.relativeTo(outputFile, workingDir),
+                    "-js", PureBasicUtil.relativeTo(jsFile, workingDir),
+                    "-lp", "spiderbasic"));
+            // the runtime libraries are synchronized by compile() if the SDK layout is known
+            if (getLibrariesDir() == null) {
+                command.add("-cl");
+                command.add(depDir.toString());
             }
+            command.add(PureBasicUtil.relativeTo(inputFile, workingDir));
+            return command.toArray(new String[0]);
+        }
+        return null;
+    }
 
-            for (String interf : interfaces) {
-                writer.write("INTERFACE\t" + interf + "\n");
-                writer.flush();
-                LinkedList<String> content = new LinkedList<>();
-                while ((line = reader.readLine()) != null) {
-                    if ("OUTPUT\tCOMPLETE".equals(line)) {
-                        break;
-                    }
-                    content.add(line);
-                }
-                collector.declareInterface(interf, content);
+    /**
+     * @return the runtime libraries of a SpiderBasic SDK which are needed next to the output, null if the SDK has
+     * none or they can't be found
+     */
+    @Nullable
+    File getLibrariesDir() {
+        final PureBasicCompilerInfo info = getInfo();
+        if (info == null || !info.hasCapability(PureBasicCompilerInfo.Capability.COPY_LIBRARIES) || sdkHome == null) {
+            return null;
+        }
+        final File dir = Paths.get(sdkHome, "libraries", "javascript").toFile();
+        return dir.isDirectory() ? dir : null;
+    }
+
+    /**
+     * Creates the command line to check inputFile for errors without producing any output. The command is run in
+     * the directory of inputFile.
+     *
+     * @return null if the compiler doesn't support checks
+     */
+    @Nullable
+    String[] createCheckCommand(@NotNull File inputFile) {
+        final PureBasicCompilerInfo info = getInfo();
+        if (info == null || !info.hasCapability(PureBasicCompilerInfo.Capability.SYNTAX_CHECK)) {
+            return null;
+        }
+        return new String[]{
+                compiler.getAbsolutePath(),
+                "--check",
+                inputFile.toString()
+        };
+    }
+
+    @NotNull
+    public static File getJsFile(@NotNull File outputFile) {
+        String name = outputFile.getName();
+        int index = name.lastIndexOf('.');
+        if (index > 0) {
+            name = name.substring(0, index) + ".js";
+        } else {
+            name = name + ".js";
+        }
+        return new File(outputFile.getParentFile(), name);
+    }
+
+    /**
+     * @return The files and directories compiling into outputFile produces: the output itself and, for SpiderBasic,
+     * the JavaScript file and the runtime libraries next to it.
+     */
+    @NotNull
+    List<File> getOutputs(@NotNull File outputFile) {
+        final PureBasicCompilerInfo info = getInfo();
+        if (info != null && info.getFlavor() == PureBasicCompilerInfo.Flavor.SPIDERBASIC) {
+            return Arrays.asList(outputFile, getJsFile(outputFile),
+                    new File(outputFile.getParentFile(), "spiderbasic"));
+        }
+        return Collections.singletonList(outputFile);
+    }
+
+    /**
+     * @return The files compiling into outputFile produces, or null if they can't be restored from the build cache.
+     */
+    @Nullable
+    List<File> getCacheableOutputs(@NotNull File outputFile) {
+        final PureBasicCompilerInfo info = getInfo();
+        if (info == null || info.getFlavor() == PureBasicCompilerInfo.Flavor.UNKNOWN) {
+            return null;
+        }
+        if (info.getFlavor() == PureBasicCompilerInfo.Flavor.SPIDERBASIC) {
+            // the runtime is not part of a cache entry, if compile() doesn't synchronize it, it must be there already
+            if (getLibrariesDir() == null && !new File(outputFile.getParentFile(), "spiderbasic").isDirectory()) {
+                return null;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            return Arrays.asList(outputFile, getJsFile(outputFile));
         }
+        return Collections.singletonList(outputFile);
     }
 
     public int compile(PureBasicTargetSettings targetSettings, @NotNull String contentRoot,
                        CompileMessageLogger logger) throws IOException {
+        return compile(targetSettings, contentRoot, new CompileOptions(), logger);
+    }
+
+    /**
+     * Compiles a target, or only checks it for errors, see {@link CompileOptions#setCheckOnly(boolean)}.
+     *
+     * @return The exit code of the compiler, 0 if the output has been restored from the build cache, -1 if the
+     * compiler could not be started, has been cancelled or timed out.
+     */
+    public int compile(PureBasicTargetSettings targetSettings, @NotNull String contentRoot,
+                       @NotNull CompileOptions options, CompileMessageLogger logger) throws IOException {
+        final String fingerprint = options.fingerprint;
+        final ProgressIndicator indicator = options.indicator;
+        final PureBasicBuildMetrics metrics = options.metrics;
+        options.restored = false;
+
         if (contentRoot.startsWith("file://")) {
             contentRoot = contentRoot.substring("file://".length());
         }
@@ -317,94 +468,273 @@ public class PureBasicCompiler {
         final File inputFile = Paths.get(contentRoot, targetSettings.getInputFile()).toAbsolutePath().toFile();
         final File outputFile = Paths.get(contentRoot, targetSettings.getOutputFile()).toAbsolutePath().toFile();
 
-        String[] command;
-
-        File workingDir = outputFile.getParentFile();
-
-        if (isPureBasic()) {
-            command = new String[]{
-                    compiler.getAbsolutePath(),
-                    "-e", outputFile.toString(),
-                    inputFile.toString()
-            };
-        } else if (isSpiderBasic()) {
-            String name = outputFile.getName();
-            int index = name.lastIndexOf('.');
-            if (index > 0) {
-                name = name.substring(0, index) + ".js";
-            } else {
-                name = name + ".js";
-            }
-            File jsFile = new File(workingDir, name);
-            File depDir = new File(workingDir, "spiderbasic");
-            command = new String[]{
-                    compiler.getAbsolutePath(),
-                    "-o", PureBasicUtil.relativeTo(outputFile, workingDir),
-                    "-js", PureBasicUtil.relativeTo(jsFile, workingDir),
-                    "-lp", "spiderbasic",
-                    "-cl", depDir.toString(),
-                    PureBasicUtil.relativeTo(inputFile, workingDir)
-            };
-        } else {
+        final String[] command = options.checkOnly
+                ? createCheckCommand(inputFile)
+                : createCompileCommand(inputFile, outputFile);
+        if (command == null) {
             logger.log(new CompileMessage(CompileMessage.CompileMessageType.ERROR,
                     "Error: invalid compiler", "", -1));
             // no valid compiler?
             return -1;
         }
 
+        if (options.checkOnly) {
+            final Integer exitCode = checkOnStandby(inputFile, options, logger);
+            if (exitCode != null) {
+                return exitCode;
+            }
+        }
+
+        final File librariesDir = options.checkOnly ? null : getLibrariesDir();
+        if (librariesDir != null) {
+            try {
+                PureBasicLibrarySync.sync(librariesDir.toPath(), new File(outputFile.getParentFile(), "spiderbasic")
+                        .toPath());
+            } catch (IOException e) {
+                LOG.warn("Unable to copy the runtime libraries of " + sdkHome, e);
+                logger.log(new CompileMessage(CompileMessage.CompileMessageType.ERROR,
+                        String.format(Texts.get("copyLibrariesFailed"), e.getMessage()), null, -1));
+                return -1;
+            }
+        }
+
+        final PureBasicBuildCache cache = PureBasicBuildCache.getInstance();
+        final List<File> outputs = fingerprint != null && !options.checkOnly
+                ? getCacheableOutputs(outputFile) : null;
+        options.restored = outputs != null && cache.restore(fingerprint, outputs);
+        if (options.restored) {
+            logger.log(new CompileMessage(CompileMessage.CompileMessageType.INFO,
+                    String.format(Texts.get("restoredFromBuildCache"), outputFile), null, -1));
+            return 0;
+        }
+
+        final File workingDir = options.checkOnly ? inputFile.getParentFile() : outputFile.getParentFile();
+
+        final long spawnStart = System.nanoTime();
         Process proc = run(command, workingDir);
         if (proc == null) {
             return -1;
         }
+        final long compileStart = System.nanoTime();
+        if (metrics != null) {
+            metrics.add(PureBasicBuildMetrics.Phase.SPAWN, compileStart - spawnStart);
+        }
 
-        try (BufferedReader outputReader = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-             BufferedReader errorReader = new BufferedReader(new InputStreamReader(proc.getErrorStream()))) {
-            String line;
-            String errorFile = inputFile.toString();
-
-            Pattern patternErrorInclude = Pattern.compile("Error: in included file '(.*)'");
-            Pattern patternErrorLine = Pattern.compile("(Error: )?Line ([0-9]+) - (.*)");
-
-            while ((line = outputReader.readLine()) != null) {
-                Matcher matchErrorInclude = patternErrorInclude.matcher(line);
-                Matcher matchErrorLine = patternErrorLine.matcher(line);
+        // Both streams are drained at the same time, otherwise the compiler blocks as soon as the pipe buffer
+        // of the stream which is not being read runs full.
+        final boolean[] failed = {false};
+        final CompileMessageLogger synchronizedLogger = message -> {
+            synchronized (logger) {
+                failed[0] |= message.type == CompileMessage.CompileMessageType.ERROR;
+                logger.log(message);
+            }
+        };
+        final CompileOutputParser stdoutParser =
+                new CompileOutputParser(inputFile.toString(), CompileMessage.CompileMessageType.INFO);
+        final CompileOutputParser stderrParser =
+                new CompileOutputParser(inputFile.toString(), CompileMessage.CompileMessageType.ERROR);
+        final Future<?> stdout = pump(proc.getInputStream(), stdoutParser, synchronizedLogger);
+        final Future<?> stderr = pump(proc.getErrorStream(), stderrParser, synchronizedLogger);
 
-                if (matchErrorInclude.matches()) {
-                    errorFile = matchErrorInclude.group(1);
-                }
-                if (matchErrorLine.matches()) {
-                    logger.log(new CompileMessage(CompileMessage.CompileMessageType.ERROR,
-                            line, errorFile, Integer.parseInt(matchErrorLine.group(2))));
-                } else {
-                    logger.log(new CompileMessage(CompileMessage.CompileMessageType.INFO,
-                            line, null, -1));
+        try {
+            final long timeout = options.timeout;
+            final long start = System.currentTimeMillis();
+            String abortReason = null;
+            while (abortReason == null && !proc.waitFor(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                if (indicator != null && indicator.isCanceled()) {
+                    abortReason = Texts.get("compileCancelled");
+                } else if (timeout > 0 && System.currentTimeMillis() - start > timeout) {
+                    abortReason = String.format(Texts.get("compileTimedOut"), timeout / 1000);
                 }
             }
-            while ((line = errorReader.readLine()) != null) {
-                Matcher matchErrorInclude = patternErrorInclude.matcher(line);
-                Matcher matchErrorLine = patternErrorLine.matcher(line);
+            if (abortReason != null) {
+                destroyProcessTree(proc);
+            }
 
-                if (matchErrorInclude.matches()) {
-                    errorFile = matchErrorInclude.group(1);
-                }
-                if (matchErrorLine.matches()) {
-                    logger.log(new CompileMessage(CompileMessage.CompileMessageType.ERROR,
-                            line, errorFile, Integer.parseInt(matchErrorLine.group(2))));
-                } else {
-                    logger.log(new CompileMessage(CompileMessage.CompileMessageType.ERROR,
-                            line, null, -1));
+            // the pipes are closed once the process (tree) is gone, so this doesn't block for long
+            try {
+                stdout.get();
+                stderr.get();
+            } catch (ExecutionException e) {
+                // destroying the process closes the streams the pumps are reading
+                if (abortReason == null) {
+                    throw e;
                 }
             }
-        }
+            if (metrics != null) {
+                final long parseTime = stdoutParser.getParseTime() + stderrParser.getParseTime();
+                metrics.add(PureBasicBuildMetrics.Phase.PARSE, parseTime);
+                metrics.add(PureBasicBuildMetrics.Phase.COMPILE, System.nanoTime() - compileStart - parseTime);
+            }
+            if (abortReason != null) {
+                logger.log(new CompileMessage(CompileMessage.CompileMessageType.ERROR, abortReason, null, -1));
+                return -1;
+            }
 
-        try {
-            return proc.waitFor();
+            final int exitCode = proc.exitValue();
+            if (exitCode == 0 && !failed[0] && outputs != null) {
+                cache.store(fingerprint, outputs);
+            }
+            return exitCode;
         } catch (InterruptedException ignored) {
+            destroyProcessTree(proc);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.warn("Unable to read the compiler output", e.getCause());
         }
 
         return -1;
     }
 
+    /**
+     * Checks the input file on a warm standby compiler of the pool instead of launching one. If the compiler can't
+     * check files in standby mode, every further check is run with --check.
+     *
+     * @return the exit code like {@link #compile} returns it, or null if the file has to be checked with --check
+     */
+    @Nullable
+    private Integer checkOnStandby(@NotNull File inputFile, @NotNull CompileOptions options,
+                                   @NotNull CompileMessageLogger logger) {
+        final PureBasicCompilerInfo info = getInfo();
+        if (standbyCheckFailed || info == null || !info.hasCapability(PureBasicCompilerInfo.Capability.STANDBY)) {
+            return null;
+        }
+        final PureBasicCompilerDaemon daemon;
+        try {
+            daemon = daemons.acquire();
+        } catch (IOException e) {
+            LOG.warn("Unable to start a standby compiler of " + sdkHome, e);
+            return null;
+        }
+
+        final long start = System.currentTimeMillis();
+        final long timeout = options.timeout > 0 ? options.timeout : STANDBY_CHECK_TIMEOUT_MS;
+        final AtomicReference<String> abortReason = new AtomicReference<>();
+        final ScheduledFuture<?> watchdog = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                () -> {
+                    if (options.indicator != null && options.indicator.isCanceled()) {
+                        abortReason.compareAndSet(null, Texts.get("compileCancelled"));
+                    } else if (System.currentTimeMillis() - start > timeout) {
+                        abortReason.compareAndSet(null, String.format(Texts.get("compileTimedOut"), timeout / 1000));
+                    }
+                    if (abortReason.get() != null) {
+                        daemon.kill();
+                    }
+                }, POLL_INTERVAL_MS, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        // buffered, a check which fails half way is repeated with --check
+        final List<CompileMessage> messages = new ArrayList<>();
+        boolean reusable = false;
+        try {
+            final boolean success = daemon.check(inputFile, messages::add);
+            reusable = true;
+            if (options.metrics != null) {
+                options.metrics.add(PureBasicBuildMetrics.Phase.COMPILE,
+                        TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - start));
+            }
+            messages.forEach(logger::log);
+            return success ? 0 : 1;
+        } catch (IOException e) {
+            // only the timeout of the options is reported, the one of the standby check means it isn't supported
+            final String reason = abortReason.get();
+            if (reason != null && (options.timeout > 0
+                    || options.indicator != null && options.indicator.isCanceled())) {
+                logger.log(new CompileMessage(CompileMessage.CompileMessageType.ERROR, reason, null, -1));
+                return -1;
+            }
+            LOG.warn("Unable to check " + inputFile + " on the standby compiler, --check is used instead", e);
+            standbyCheckFailed = true;
+            return null;
+        } finally {
+            watchdog.cancel(false);
+            if (reusable) {
+                daemons.release(daemon);
+            } else {
+                daemons.discard(daemon);
+            }
+        }
+    }
+
+    /**
+     * Kills a process and everything it started. The descendants go first, once the process is gone they can't be
+     * found anymore.
+     */
+    private static void destroyProcessTree(@NotNull Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    @NotNull
+    private static Future<?> pump(@NotNull InputStream stream, @NotNull CompileOutputParser parser,
+                                  @NotNull CompileMessageLogger logger) {
+        return ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            parser.pump(stream, logger);
+            return null;
+        });
+    }
+
+    /**
+     * Optional settings of {@link #compile(PureBasicTargetSettings, String, CompileOptions, CompileMessageLogger)}.
+     */
+    public static class CompileOptions {
+        private String fingerprint;
+        private ProgressIndicator indicator;
+        private long timeout;
+        private PureBasicBuildMetrics metrics;
+        private boolean checkOnly;
+        private boolean restored;
+
+        /**
+         * The {@link PureBasicTargetFingerprint} of the target. If given, the output is restored from the build
+         * cache instead of launching the compiler if possible, and the output of a successful build is added to
+         * the cache.
+         */
+        public CompileOptions setFingerprint(@Nullable String fingerprint) {
+            this.fingerprint = fingerprint;
+            return this;
+        }
+
+        /**
+         * Cancelling the indicator kills the compiler including all processes it started.
+         */
+        public CompileOptions setIndicator(@Nullable ProgressIndicator indicator) {
+            this.indicator = indicator;
+            return this;
+        }
+
+        /**
+         * Milliseconds after which the compiler is killed, 0 to wait forever.
+         */
+        public CompileOptions setTimeout(long timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Receives the time spent starting the compiler, compiling and parsing its output.
+         */
+        public CompileOptions setMetrics(@Nullable PureBasicBuildMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Only checks the target for errors, no output is written and the build cache isn't used.
+         */
+        public CompileOptions setCheckOnly(boolean checkOnly) {
+            this.checkOnly = checkOnly;
+            return this;
+        }
+
+        /**
+         * @return Whether the last compile with these options restored the output from the build cache instead of
+         * launching the compiler.
+         */
+        public boolean isRestored() {
+            return restored;
+        }
+    }
+
     public interface CompileMessageLogger {
         void log(CompileMessage message);
     }
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A compiler process running in standby mode (--standby). The process stays alive between queries, so only the
+ * first query pays for the compiler start up.
+ */
+class PureBasicCompilerDaemon implements Closeable {
+    static final String OUTPUT_COMPLETE = "OUTPUT\tCOMPLETE";
+    private static final String READY = "READY";
+    private static final String SUCCESS = "SUCCESS";
+    private static final String INCLUDE_FILE = "INCLUDEFILE\t";
+    private static final int PIPELINE_BATCH_SIZE = 64;
+
+    private final Process process;
+    private final BufferedReader reader;
+    private final Writer writer;
+    private long lastUsed;
+    private int generation;
+
+    PureBasicCompilerDaemon(@NotNull Process process) throws IOException {
+        this.process = process;
+        this.reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        this.writer = new OutputStreamWriter(process.getOutputStream());
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (READY.equals(line)) {
+                break;
+            }
+        }
+        if (line == null) {
+            close();
+            throw new IOException("The compiler did not enter the standby mode.");
+        }
+        touch();
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Kills the compiler, a query which is waiting for its response fails with an IOException.
+     */
+    void kill() {
+        process.destroyForcibly();
+    }
+
+    /**
+     * @return the generation of the {@link PureBasicCompilerDaemonPool} the daemon has been started for
+     */
+    int getGeneration() {
+        return generation;
+    }
+
+    void setGeneration(int generation) {
+        this.generation = generation;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    void touch() {
+        lastUsed = System.currentTimeMillis();
+    }
+
+    void write(@NotNull String command) throws IOException {
+        writer.write(command);
+        writer.write('\n');
+    }
+
+    void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Reads the response of a single command up to the terminating OUTPUT COMPLETE line.
+     */
+    @NotNull
+    List<String> readResponse() throws IOException {
+        final ArrayList<String> lines = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (OUTPUT_COMPLETE.equals(line)) {
+                return lines;
+            }
+            lines.add(line);
+        }
+        throw new IOException("The standby compiler terminated unexpectedly.");
+    }
+
+    @NotNull
+    List<String> query(@NotNull String command) throws IOException {
+        write(command);
+        flush();
+        return readResponse();
+    }
+
+    /**
+     * Sends one of the *LIST commands. Their response starts with the amount of entries, which is skipped.
+     */
+    @NotNull
+    List<String> queryList(@NotNull String command) throws IOException {
+        final List<String> lines = query(command);
+        return lines.isEmpty() ? lines : lines.subList(1, lines.size());
+    }
+
+    /**
+     * Checks a source file for errors like --check does, the messages are formatted like the ones of --check.
+     * <p>
+     * The compiler answers with SUCCESS, or with an ERROR block that ends with OUTPUT COMPLETE. WARNING blocks can
+     * come before either. The header of a block ends with the line number, an INCLUDEFILE line in the block names
+     * the include the line belongs to.
+     *
+     * @return whether the file is free of errors
+     */
+    boolean check(@NotNull File inputFile, @NotNull PureBasicCompiler.CompileMessageLogger logger)
+            throws IOException {
+        write("SOURCE\t" + inputFile.getAbsolutePath());
+        if (inputFile.getParentFile() != null) {
+            write("INCLUDEPATH\t" + inputFile.getParentFile().getAbsolutePath() + File.separator);
+        }
+        write("COMPILE\tCHECK");
+        flush();
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (SUCCESS.equals(line)) {
+                return true;
+            }
+            final boolean error = line.startsWith("ERROR");
+            if (!error && !line.startsWith("WARNING")) {
+                // progress
+                continue;
+            }
+            final String[] header = line.split("\t");
+            int lineNumber = -1;
+            try {
+                lineNumber = Integer.parseInt(header[header.length - 1]);
+            } catch (NumberFormatException ignored) {
+            }
+            String file = inputFile.toString();
+            final StringBuilder text = new StringBuilder();
+            for (String blockLine : readResponse()) {
+                if (blockLine.startsWith(INCLUDE_FILE)) {
+                    file = blockLine.substring(INCLUDE_FILE.length());
+                } else if (!blockLine.isEmpty()) {
+                    text.append(text.length() > 0 ? " " : "").append(blockLine);
+                }
+            }
+            final String message = lineNumber > 0 ? "Line " + lineNumber + " - " + text : text.toString();
+            logger.log(new CompileMessage(error ? CompileMessage.CompileMessageType.ERROR
+                    : CompileMessage.CompileMessageType.WARN, message, lineNumber > 0 ? file : null, lineNumber));
+            if (error) {
+                return false;
+            }
+        }
+        throw new IOException("The standby compiler terminated unexpectedly.");
+    }
+
+    /**
+     * Sends "command\targument" for every argument and hands the responses to the consumer in the same order.
+     * <p>
+     * Unlike calling {@link #query} in a loop, this doesn't wait for a response before sending the next request:
+     * a pooled writer sends the requests in batches while the responses are read as they stream back. The
+     * compiler answers in order, so the n-th response belongs to the n-th argument.
+     */
+    void queryPipelined(@NotNull String command, @NotNull List<String> arguments,
+                        @NotNull ResponseConsumer consumer) throws IOException {
+        final Future<?> writer = AppExecutorUtil.getAppExecutorService().submit(() -> {
+            int pending = 0;
+            for (String argument : arguments) {
+                write(command + "\t" + argument);
+                if (++pending == PIPELINE_BATCH_SIZE) {
+                    flush();
+                    pending = 0;
+                }
+            }
+            flush();
+            return null;
+        });
+
+        try {
+            for (String argument : arguments) {
+                consumer.accept(argument, readResponse());
+            }
+        } catch (IOException | RuntimeException e) {
+            // the writer might be blocked by a compiler which no longer reads
+            process.destroyForcibly();
+            throw e;
+        }
+
+        try {
+            writer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            write("END");
+            flush();
+        } catch (IOException ignored) {
+        }
+
+        try {
+            if (!process.waitFor(1, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    interface ResponseConsumer {
+        void accept(String argument, List<String> response);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import com.intellij.concurrency.JobScheduler;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.ShutDownTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a small amount of standby compilers of a single SDK warm. Daemons are handed out exclusively, checked for
+ * liveness before reuse and shut down after they have been idle for a while.
+ * <p>
+ * Every {@link #clear()} starts a new generation, daemons of an older one are never reused.
+ */
+class PureBasicCompilerDaemonPool {
+    private static final Logger LOG = Logger.getInstance(PureBasicCompilerDaemonPool.class);
+    private static final int MAX_IDLE_DAEMONS = 2;
+    private static final long IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private final Supplier<Process> launcher;
+    private final ArrayDeque<PureBasicCompilerDaemon> idle = new ArrayDeque<>();
+    private ScheduledFuture<?> evictionTask = null;
+    private int generation;
+
+    PureBasicCompilerDaemonPool(@NotNull Supplier<Process> launcher) {
+        this.launcher = launcher;
+        ShutDownTracker.getInstance().registerShutdownTask(this::clear);
+    }
+
+    /**
+     * @return An idle daemon or a freshly started one. It has to be handed back with {@link #release} or
+     * {@link #discard} afterwards.
+     */
+    @NotNull
+    PureBasicCompilerDaemon acquire() throws IOException {
+        PureBasicCompilerDaemon daemon;
+        while ((daemon = pollIdle()) != null) {
+            if (daemon.isAlive()) {
+                return daemon;
+            }
+            daemon.close();
+        }
+
+        final int launchGeneration;
+        synchronized (idle) {
+            launchGeneration = generation;
+        }
+        final Process process = launcher.get();
+        if (process == null) {
+            throw new IOException("Unable to start the standby compiler.");
+        }
+        daemon = new PureBasicCompilerDaemon(process);
+        daemon.setGeneration(launchGeneration);
+        return daemon;
+    }
+
+    /**
+     * Hands back a daemon which is in a clean state (no pending output) so it can be reused. A daemon which has
+     * been started before the last {@link #clear()} is closed instead.
+     */
+    void release(@NotNull PureBasicCompilerDaemon daemon) {
+        synchronized (idle) {
+            if (daemon.getGeneration() == generation && daemon.isAlive() && idle.size() < MAX_IDLE_DAEMONS) {
+                daemon.touch();
+                idle.addFirst(daemon);
+                scheduleEviction();
+                return;
+            }
+        }
+        daemon.close();
+    }
+
+    /**
+     * Hands back a daemon whose state is unknown, e.g. after a failed query.
+     */
+    void discard(@NotNull PureBasicCompilerDaemon daemon) {
+        daemon.close();
+    }
+
+    /**
+     * Shuts down all idle daemons and starts a new generation, so daemons which are currently in use are closed when
+     * they are released.
+     */
+    void clear() {
+        final PureBasicCompilerDaemon[] daemons;
+        synchronized (idle) {
+            generation++;
+            daemons = idle.toArray(new PureBasicCompilerDaemon[0]);
+            idle.clear();
+            cancelEviction();
+        }
+        for (PureBasicCompilerDaemon daemon : daemons) {
+            daemon.close();
+        }
+    }
+
+    @Nullable
+    private PureBasicCompilerDaemon pollIdle() {
+        synchronized (idle) {
+            return idle.pollFirst();
+        }
+    }
+
+    private void evictIdle() {
+        final long deadline = System.currentTimeMillis() - IDLE_TIMEOUT_MS;
+        final ArrayDeque<PureBasicCompilerDaemon> evicted = new ArrayDeque<>();
+        synchronized (idle) {
+            for (Iterator<PureBasicCompilerDaemon> it = idle.iterator(); it.hasNext(); ) {
+                final PureBasicCompilerDaemon daemon = it.next();
+                if (!daemon.isAlive() || daemon.getLastUsed() < deadline) {
+                    it.remove();
+                    evicted.add(daemon);
+                }
+            }
+            if (idle.isEmpty()) {
+                cancelEviction();
+            }
+        }
+        if (!evicted.isEmpty()) {
+            LOG.debug("Shutting down " + evicted.size() + " idle standby compiler(s)");
+        }
+        for (PureBasicCompilerDaemon daemon : evicted) {
+            daemon.close();
+        }
+    }
+
+    private void scheduleEviction() {
+        if (evictionTask == null) {
+            evictionTask = JobScheduler.getScheduler().scheduleWithFixedDelay(this::evictIdle,
+                    1, 1, TimeUnit.MINUTES);
+        }
+    }
+
+    private void cancelEviction() {
+        if (evictionTask != null) {
+            evictionTask.cancel(false);
+            evictionTask = null;
+        }
+    }
+}
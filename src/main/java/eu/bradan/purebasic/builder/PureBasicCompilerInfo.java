@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * What a compiler executable told about itself when it was probed with --version, e.g.
+ * "PureBasic 5.72 LTS (Linux - x64)" or "SpiderBasic 2.10 (Windows - x86)".
+ * The probe is only repeated when the executable has been replaced.
+ */
+public class PureBasicCompilerInfo {
+    private static final Pattern PATTERN_VERSION =
+            Pattern.compile("(PureBasic|SpiderBasic)\\s+([0-9]+)\\.([0-9]+)[^(]*(?:\\((.*) - (.*)\\))?.*");
+
+    private final String versionString;
+    private final Flavor flavor;
+    private final int majorVersion;
+    private final int minorVersion;
+    private final String os;
+    private final String architecture;
+    private final Set<Capability> capabilities;
+    private final File executable;
+    private final long executableSize;
+    private final long executableModified;
+    private String identity;
+    private String identityStamp;
+
+    private PureBasicCompilerInfo(@Nullable String versionString, @NotNull File executable) {
+        this.versionString = versionString;
+        this.executable = executable;
+        this.executableSize = executable.length();
+        this.executableModified = executable.lastModified();
+
+        final Matcher m = PATTERN_VERSION.matcher(versionString != null ? versionString : "");
+        if (m.matches()) {
+            this.flavor = "PureBasic".equals(m.group(1)) ? Flavor.PUREBASIC : Flavor.SPIDERBASIC;
+            this.majorVersion = Integer.parseInt(m.group(2));
+            this.minorVersion = Integer.parseInt(m.group(3));
+            this.os = m.group(4) != null ? m.group(4).trim() : "";
+            this.architecture = m.group(5) != null ? m.group(5).trim() : "";
+        } else {
+            this.flavor = Flavor.UNKNOWN;
+            this.majorVersion = 0;
+            this.minorVersion = 0;
+            this.os = "";
+            this.architecture = "";
+        }
+
+        final EnumSet<Capability> capabilities = EnumSet.noneOf(Capability.class);
+        if (flavor != Flavor.UNKNOWN) {
+            capabilities.add(Capability.STANDBY);
+            capabilities.add(Capability.SYNTAX_CHECK);
+        }
+        if (flavor == Flavor.PUREBASIC && majorVersion >= 6) {
+            capabilities.add(Capability.C_BACKEND);
+        }
+        if (flavor == Flavor.SPIDERBASIC) {
+            capabilities.add(Capability.COPY_LIBRARIES);
+        }
+        this.capabilities = Collections.unmodifiableSet(capabilities);
+    }
+
+    @NotNull
+    static PureBasicCompilerInfo create(@Nullable String versionString, @NotNull File executable) {
+        return new PureBasicCompilerInfo(versionString, executable);
+    }
+
+    /**
+     * @return true if the executable has not been replaced since it was probed.
+     */
+    boolean isUpToDate(@NotNull File executable) {
+        return executable.length() == executableSize && executable.lastModified() == executableModified;
+    }
+
+    /**
+     * @return A hash over the compiler executable and its residents, or null if they can't be read. It is computed
+     * on first use and again whenever the size or modification time of a resident changed, or a resident has been
+     * added or removed.
+     */
+    @Nullable
+    synchronized String getIdentity() {
+        final String stamp = stampResidents();
+        if (identity == null || !stamp.equals(identityStamp)) {
+            try {
+                identity = PureBasicDeclarationCache.fingerprint(executable);
+                identityStamp = stamp;
+            } catch (IOException ignored) {
+                identity = null;
+            }
+        }
+        return identity;
+    }
+
+    @NotNull
+    private String stampResidents() {
+        final StringBuilder sb = new StringBuilder();
+        for (File resident : PureBasicDeclarationCache.listResidents(executable)) {
+            sb.append(resident.getName()).append(':').append(resident.length()).append(':')
+                    .append(resident.lastModified()).append(';');
+        }
+        return sb.toString();
+    }
+
+    @Nullable
+    public String getVersionString() {
+        return versionString;
+    }
+
+    @NotNull
+    public Flavor getFlavor() {
+        return flavor;
+    }
+
+    public int getMajorVersion() {
+        return majorVersion;
+    }
+
+    public int getMinorVersion() {
+        return minorVersion;
+    }
+
+    @NotNull
+    public String getOs() {
+        return os;
+    }
+
+    @NotNull
+    public String getArchitecture() {
+        return architecture;
+    }
+
+    public boolean hasCapability(@NotNull Capability capability) {
+        return capabilities.contains(capability);
+    }
+
+    @NotNull
+    public Set<Capability> getCapabilities() {
+        return capabilities;
+    }
+
+    public enum Flavor {
+        PUREBASIC,
+        SPIDERBASIC,
+        UNKNOWN
+    }
+
+    public enum Capability {
+        /**
+         * Supports the --standby protocol used for the SDK declarations and syntax checks.
+         */
+        STANDBY,
+        /**
+         * Supports --check, a syntax check without creating an output file.
+         */
+        SYNTAX_CHECK,
+        /**
+         * PureBasic 6 and newer ship the C backend.
+         */
+        C_BACKEND,
+        /**
+         * SpiderBasic copies its runtime libraries next to the output (-cl).
+         */
+        COPY_LIBRARIES
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Persists the declarations of an SDK (functions, constants, structures and interfaces) in the system cache
+ * directory, so they don't have to be queried from a standby compiler after every IDE start.
+ * <p>
+ * The cache file is named after a hash of the compiler executable and its residents. Layout:
+ * magic, format version, payload length, payload, CRC32 of the payload. The payload consists of four sections
+ * (functions, constants, structures, interfaces), each an entry count followed by the entries. Strings are stored
+ * as byte length and UTF-8 bytes.
+ */
+class PureBasicDeclarationCache {
+    private static final Logger LOG = Logger.getInstance(PureBasicDeclarationCache.class);
+    private static final int MAGIC = 0x50424443; // PBDC
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+    private final Path file;
+
+    private PureBasicDeclarationCache(@NotNull Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @return The cache for the given compiler or null if its executable can't be fingerprinted.
+     */
+    @Nullable
+    static PureBasicDeclarationCache forCompiler(@NotNull PureBasicCompilerInfo info) {
+        final String identity = info.getIdentity();
+        if (identity == null) {
+            return null;
+        }
+        final Path directory = Paths.get(PathManager.getSystemPath(), "purebasic", "declarations");
+        return new PureBasicDeclarationCache(directory.resolve(identity + ".bin"));
+    }
+
+    /**
+     * A hash over the compiler executable and all residents, as those define the available declarations.
+     */
+    @NotNull
+    static String fingerprint(@NotNull File compiler) throws IOException {
+        final MessageDigest digest = PureBasicDigest.sha256();
+        final ArrayList<File> files = new ArrayList<>();
+        files.add(compiler);
+        files.addAll(listResidents(compiler));
+
+        for (File f : files) {
+            digest.update(f.getName().getBytes(StandardCharsets.UTF_8));
+            PureBasicDigest.update(digest, f.toPath());
+        }
+        return PureBasicDigest.toHex(digest);
+    }
+
+    /**
+     * @return the residents of the SDK of the compiler, sorted by path
+     */
+    @NotNull
+    static List<File> listResidents(@NotNull File compiler) {
+        final File compilers = compiler.getParentFile();
+        final File[] residents = compilers != null
+                ? new File(compilers.getParentFile(), "residents").listFiles(File::isFile)
+                : null;
+        if (residents == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(residents);
+        return Arrays.asList(residents);
+    }
+
+    /**
+     * Replays the cached declarations into the collector. The whole file is decoded first, so a file which turns out
+     * to be broken halfway doesn't leave the collector with half of the declarations.
+     *
+     * @return false if there is no valid cache file, the collector hasn't been called in that case.
+     */
+    boolean load(@NotNull PureBasicCompiler.DeclarationsCollector collector) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+
+        final List<Consumer<PureBasicCompiler.DeclarationsCollector>> declarations;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE + Long.BYTES
+                    || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return false;
+            }
+
+            final int length = buffer.getInt();
+            if (length < 0 || buffer.remaining() != length + Long.BYTES) {
+                return false;
+            }
+
+            final ByteBuffer payload = buffer.slice(HEADER_SIZE, length);
+            final CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != buffer.getLong(HEADER_SIZE + length)) {
+                return false;
+            }
+
+            declarations = decode(payload);
+        } catch (IOException | BufferUnderflowException | NegativeArraySizeException | IllegalArgumentException e) {
+            LOG.warn("Unable to read " + file, e);
+            return false;
+        }
+        declarations.forEach(declaration -> declaration.accept(collector));
+        return true;
+    }
+
+    @NotNull
+    private static List<Consumer<PureBasicCompiler.DeclarationsCollector>> decode(@NotNull ByteBuffer payload) {
+        final ArrayList<Consumer<PureBasicCompiler.DeclarationsCollector>> declarations = new ArrayList<>();
+        for (int i = payload.getInt(); i > 0; i--) {
+            final String name = getString(payload);
+            final String args = getString(payload);
+            final String description = getString(payload);
+            declarations.add(collector -> collector.declareFunction(name, args, description));
+        }
+        for (int i = payload.getInt(); i > 0; i--) {
+            final int type = payload.getInt();
+            final String name = getString(payload);
+            final String value = getString(payload);
+            declarations.add(collector -> collector.declareConstant(type, name, value));
+        }
+        for (int i = payload.getInt(); i > 0; i--) {
+            final String name = getString(payload);
+            final List<String> content = getStrings(payload);
+            declarations.add(collector -> collector.declareStructure(name, content));
+        }
+        for (int i = payload.getInt(); i > 0; i--) {
+            final String name = getString(payload);
+            final List<String> content = getStrings(payload);
+            declarations.add(collector -> collector.declareInterface(name, content));
+        }
+        return declarations;
+    }
+
+    @NotNull
+    private static String getString(@NotNull ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @NotNull
+    private static List<String> getStrings(@NotNull ByteBuffer buffer) {
+        final int count = buffer.getInt();
+        final ArrayList<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(getString(buffer));
+        }
+        return strings;
+    }
+
+    /**
+     * @return A collector which forwards everything to the given collector and records it for {@link Recorder#save}.
+     */
+    @NotNull
+    Recorder record(@NotNull PureBasicCompiler.DeclarationsCollector collector) {
+        return new Recorder(collector);
+    }
+
+    class Recorder implements PureBasicCompiler.DeclarationsCollector {
+        private final PureBasicCompiler.DeclarationsCollector delegate;
+        private final Section functions = new Section();
+        private final Section constants = new Section();
+        private final Section structures = new Section();
+        private final Section interfaces = new Section();
+
+        private Recorder(@NotNull PureBasicCompiler.DeclarationsCollector delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void declareConstant(int type, String name, String value) {
+            delegate.declareConstant(type, name, value);
+            constants.add(out -> {
+                out.writeInt(type);
+                putString(out, name);
+                putString(out, value);
+            });
+        }
+
+        @Override
+        public void declareStructure(String name, List<String> content) {
+            delegate.declareStructure(name, content);
+            structures.add(out -> {
+                putString(out, name);
+                putStrings(out, content);
+            });
+        }
+
+        @Override
+        public void declareInterface(String name, List<String> content) {
+            delegate.declareInterface(name, content);
+            interfaces.add(out -> {
+                putString(out, name);
+                putStrings(out, content);
+            });
+        }
+
+        @Override
+        public void declareFunction(String name, String args, String description) {
+            delegate.declareFunction(name, args, description);
+            functions.add(out -> {
+                putString(out, name);
+                putString(out, args);
+                putString(out, description);
+            });
+        }
+
+        /**
+         * Writes everything recorded so far. The file is replaced atomically, so concurrent readers either see
+         * the old or the new content.
+         */
+        void save() {
+            try {
+                final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+                for (Section section : new Section[]{functions, constants, structures, interfaces}) {
+                    section.writeTo(payload);
+                }
+
+                final CRC32 crc = new CRC32();
+                crc.update(payload.toByteArray());
+
+                Files.createDirectories(file.getParent());
+                final Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeInt(payload.size());
+                    payload.writeTo(out);
+                    out.writeLong(crc.getValue());
+                }
+                try {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                LOG.warn("Unable to write " + file, e);
+            }
+        }
+    }
+
+    private static void putString(@NotNull DataOutputStream out, @Nullable String string) throws IOException {
+        final byte[] bytes = (string != null ? string : "").getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void putStrings(@NotNull DataOutputStream out, @NotNull List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            putString(out, string);
+        }
+    }
+
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static class Section {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int count = 0;
+
+        void add(@NotNull EntryWriter entry) {
+            try {
+                entry.write(out);
+                count++;
+            } catch (IOException e) {
+                // ByteArrayOutputStream doesn't throw
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void writeTo(@NotNull OutputStream target) throws IOException {
+            final DataOutputStream header = new DataOutputStream(target);
+            header.writeInt(count);
+            bytes.writeTo(target);
+        }
+    }
+}
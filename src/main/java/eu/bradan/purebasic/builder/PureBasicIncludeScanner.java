@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects the files a compilation unit consists of by following IncludeFile, XIncludeFile, IncludePath and
+ * IncludeBinary statements, without parsing the sources.
+ * <p>
+ * The scan is an over-approximation: conditional compilation is ignored, so includes of every branch are followed.
+ * Paths built from anything but a string literal (optionally prefixed with #PB_Compiler_FilePath or
+ * #PB_Compiler_Home) are skipped.
+ */
+class PureBasicIncludeScanner {
+    private static final Pattern PATTERN_INCLUDE = Pattern.compile(
+            "(?:^|:)[ \\t]*(XIncludeFile|IncludeFile|IncludePath|IncludeBinary)[ \\t]+"
+                    + "(?:(#PB_Compiler_FilePath|#PB_Compiler_Home)[ \\t]*\\+[ \\t]*)?\"([^\"\\r\\n]*)\"",
+            Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+
+    private final File mainDirectory;
+    private final File compilerHome;
+    private final LinkedHashSet<File> files = new LinkedHashSet<>();
+    private File includePath;
+
+    private PureBasicIncludeScanner(@NotNull File inputFile, @Nullable File compilerHome) {
+        this.mainDirectory = inputFile.getAbsoluteFile().getParentFile();
+        this.compilerHome = compilerHome;
+    }
+
+    /**
+     * @return the input file followed by all files it includes, directly or indirectly, in the order the compiler
+     * reads them; files which don't exist are part of the result as well
+     */
+    @NotNull
+    static List<File> scan(@NotNull File inputFile, @Nullable File compilerHome) {
+        final PureBasicIncludeScanner scanner = new PureBasicIncludeScanner(inputFile, compilerHome);
+        scanner.visit(inputFile.getAbsoluteFile(), true);
+        return new ArrayList<>(scanner.files);
+    }
+
+    private void visit(@NotNull File file, boolean source) {
+        if (!files.add(file) || !source || !file.isFile()) {
+            return;
+        }
+
+        final String content;
+        try {
+            content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return;
+        }
+
+        final Matcher m = PATTERN_INCLUDE.matcher(content);
+        while (m.find()) {
+            final String keyword = m.group(1);
+            final File resolved = resolve(file, m.group(2), m.group(3));
+            if ("IncludePath".equalsIgnoreCase(keyword)) {
+                includePath = resolved;
+            } else {
+                visit(resolved, !"IncludeBinary".equalsIgnoreCase(keyword));
+            }
+        }
+    }
+
+    @NotNull
+    private File resolve(@NotNull File currentFile, @Nullable String prefix, @NotNull String path) {
+        File base;
+        if ("#PB_Compiler_FilePath".equalsIgnoreCase(prefix)) {
+            base = currentFile.getParentFile();
+        } else if ("#PB_Compiler_Home".equalsIgnoreCase(prefix) && compilerHome != null) {
+            base = compilerHome;
+        } else {
+            base = includePath != null ? includePath : mainDirectory;
+        }
+
+        // sources written on Windows often use backslashes, while Windows accepts slashes as well
+        final File file = new File(path.replace('\\', '/'));
+        return (file.isAbsolute() ? file : new File(base, file.getPath())).toPath().normalize().toFile();
+    }
+}
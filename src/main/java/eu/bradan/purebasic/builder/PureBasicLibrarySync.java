@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a copy of the SpiderBasic runtime libraries next to the output of a target, instead of letting the compiler
+ * copy all of them on every build (-cl).
+ * <p>
+ * A manifest in the target directory lists every installed file with the size, modification time and hash of its
+ * source. Sources whose size and modification time didn't change aren't hashed again, and only files whose hash
+ * changed or which are missing are installed, as hard links where the file system allows it. Files which are gone
+ * from the SDK are removed, files the manifest doesn't know about are left alone.
+ */
+class PureBasicLibrarySync {
+    static final String MANIFEST = ".purebasic-libraries";
+
+    private PureBasicLibrarySync() {
+    }
+
+    /**
+     * Brings the target directory up to date with the source directory. Synchronizations are serialized, targets
+     * sharing an output directory would otherwise install the same files at the same time.
+     *
+     * @return the amount of files which have been installed
+     */
+    static synchronized int sync(@NotNull Path source, @NotNull Path target) throws IOException {
+        final Map<String, Entry> installed = readManifest(target.resolve(MANIFEST));
+        final Map<String, Entry> current = new TreeMap<>();
+        int count = 0;
+
+        final List<Path> files;
+        try (Stream<Path> stream = Files.walk(source)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            final String path = source.relativize(file).toString().replace('\\', '/');
+            final long size = Files.size(file);
+            final long modified = Files.getLastModifiedTime(file).toMillis();
+
+            final Entry previous = installed.get(path);
+            final String hash = previous != null && previous.size == size && previous.modified == modified
+                    ? previous.hash : hash(file);
+            final Path destination = target.resolve(path);
+            if (previous == null || !previous.hash.equals(hash)
+                    || !Files.isRegularFile(destination) || Files.size(destination) != size) {
+                install(file, destination);
+                count++;
+            }
+            current.put(path, new Entry(size, modified, hash));
+        }
+
+        for (String path : installed.keySet()) {
+            if (!current.containsKey(path)) {
+                Files.deleteIfExists(target.resolve(path));
+            }
+        }
+        // an unchanged manifest isn't written, the directory then stays as the target's stamp saw it
+        if (!current.equals(installed)) {
+            writeManifest(target.resolve(MANIFEST), current);
+        }
+        return count;
+    }
+
+    private static void install(@NotNull Path source, @NotNull Path destination) throws IOException {
+        Files.createDirectories(destination.getParent());
+        // the old file is removed first, so a hard link to the old SDK file is never written through
+        Files.deleteIfExists(destination);
+        try {
+            Files.createLink(destination, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            // different file systems, or no hard links at all
+            Files.copy(source, destination, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    @NotNull
+    private static String hash(@NotNull Path file) throws IOException {
+        final MessageDigest digest = PureBasicDigest.sha256();
+        PureBasicDigest.update(digest, file);
+        return PureBasicDigest.toHex(digest);
+    }
+
+    @NotNull
+    private static Map<String, Entry> readManifest(@NotNull Path manifest) {
+        final Map<String, Entry> entries = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                final String[] fields = line.split("\t");
+                if (fields.length == 4) {
+                    entries.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                            fields[3]));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // no manifest yet or a broken one, everything gets installed again
+            entries.clear();
+        }
+        return entries;
+    }
+
+    private static void writeManifest(@NotNull Path manifest, @NotNull Map<String, Entry> entries)
+            throws IOException {
+        Files.createDirectories(manifest.getParent());
+        final Path temp = manifest.resolveSibling(MANIFEST + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                final Entry e = entry.getValue();
+                writer.write(entry.getKey() + "\t" + e.size + "\t" + e.modified + "\t" + e.hash + "\n");
+            }
+        }
+        try {
+            Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final String hash;
+
+        Entry(long size, long modified, @NotNull String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            final Entry other = (Entry) o;
+            return size == other.size && modified == other.modified && hash.equals(other.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, modified, hash);
+        }
+    }
+}
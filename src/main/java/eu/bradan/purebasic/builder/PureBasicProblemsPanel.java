@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.ui.ColoredTreeCellRenderer;
+import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.treeStructure.Tree;
+import eu.bradan.purebasic.Texts;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The diagnostics of the current build grouped by file. Once the build is finished they are grouped by whether they
+ * are new, fixed or unchanged compared with the previous build as well.
+ */
+public class PureBasicProblemsPanel extends JPanel {
+    private final Project project;
+    private final DefaultMutableTreeNode root = new DefaultMutableTreeNode();
+    private final DefaultTreeModel model = new DefaultTreeModel(root);
+    private final Tree tree = new Tree(model);
+
+    public PureBasicProblemsPanel(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        super(new BorderLayout());
+        this.project = project;
+
+        tree.setRootVisible(false);
+        tree.setShowsRootHandles(true);
+        tree.setCellRenderer(new ProblemCellRenderer());
+        tree.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    navigateToSelection();
+                }
+            }
+        });
+        tree.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+                    navigateToSelection();
+                }
+            }
+        });
+        this.add(new JBScrollPane(tree), BorderLayout.CENTER);
+
+        showSession(CompileLog.getInstance(project).getCurrentSession());
+        project.getMessageBus().connect(toolWindow.getDisposable())
+                .subscribe(CompileLog.TOPIC, new CompileLog.Listener() {
+                    @Override
+                    public void sessionStarted(@NotNull CompileSession session) {
+                        EventQueue.invokeLater(() -> showSession(null));
+                    }
+
+                    @Override
+                    public void sessionFinished(@NotNull CompileSession session) {
+                        EventQueue.invokeLater(() -> showSession(session));
+                    }
+                });
+    }
+
+    private void showSession(@Nullable CompileSession session) {
+        root.removeAllChildren();
+        if (session != null) {
+            final CompileDiagnosticsDiff diff = session.getDiff();
+            if (diff != null) {
+                // regressions first, the unchanged diagnostics are collapsed
+                for (CompileDiagnosticsDiff.Change change : CompileDiagnosticsDiff.Change.values()) {
+                    final List<CompileMessage> messages = diff.getMessages(change);
+                    final DefaultMutableTreeNode changeNode = new DefaultMutableTreeNode(change);
+                    addFileNodes(changeNode, messages);
+                    root.add(changeNode);
+                }
+            } else {
+                final CompileDiagnostics diagnostics = session.getDiagnostics();
+                for (String file : diagnostics.getFiles()) {
+                    addFileNodes(root, diagnostics.getMessages(file));
+                }
+            }
+        }
+        model.reload();
+        for (int i = 0; i < tree.getRowCount(); i++) {
+            final Object node = tree.getPathForRow(i).getLastPathComponent();
+            if (((DefaultMutableTreeNode) node).getUserObject() != CompileDiagnosticsDiff.Change.UNCHANGED) {
+                tree.expandRow(i);
+            }
+        }
+    }
+
+    private static void addFileNodes(@NotNull DefaultMutableTreeNode parent, @NotNull List<CompileMessage> messages) {
+        final Map<String, DefaultMutableTreeNode> fileNodes = new TreeMap<>();
+        for (CompileMessage message : messages) {
+            final DefaultMutableTreeNode messageNode = new DefaultMutableTreeNode(message, false);
+            if (message.file == null) {
+                parent.add(messageNode);
+            } else {
+                fileNodes.computeIfAbsent(CompileDiagnostics.toKey(message.file), DefaultMutableTreeNode::new)
+                        .add(messageNode);
+            }
+        }
+        fileNodes.values().forEach(parent::add);
+    }
+
+    private void navigateToSelection() {
+        final Object node = tree.getLastSelectedPathComponent();
+        if (node instanceof DefaultMutableTreeNode) {
+            final Object value = ((DefaultMutableTreeNode) node).getUserObject();
+            if (value instanceof CompileMessage) {
+                ((CompileMessage) value).navigateTo(project);
+            }
+        }
+    }
+
+    private static class ProblemCellRenderer extends ColoredTreeCellRenderer {
+        @Override
+        public void customizeCellRenderer(@NotNull JTree tree, Object value, boolean selected, boolean expanded,
+                                          boolean leaf, int row, boolean hasFocus) {
+            if (!(value instanceof DefaultMutableTreeNode)) {
+                return;
+            }
+            final DefaultMutableTreeNode node = (DefaultMutableTreeNode) value;
+            final Object userObject = node.getUserObject();
+            if (userObject instanceof CompileDiagnosticsDiff.Change) {
+                final CompileDiagnosticsDiff.Change change = (CompileDiagnosticsDiff.Change) userObject;
+                append(Texts.get("problems" + change), SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES);
+                append(" (" + countMessages(node) + ")", SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            } else if (userObject instanceof CompileMessage) {
+                final CompileMessage message = (CompileMessage) userObject;
+                setIcon(message.type == CompileMessage.CompileMessageType.ERROR
+                        ? AllIcons.General.Error : AllIcons.General.Warning);
+                append(message.getDescription());
+                append(" :" + message.line, SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            } else if (userObject instanceof String) {
+                final File file = new File((String) userObject);
+                setIcon(AllIcons.FileTypes.Any_type);
+                append(file.getName());
+                append(" " + file.getParent(), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+                append(" (" + node.getChildCount() + ")", SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            }
+        }
+
+        private static int countMessages(@NotNull DefaultMutableTreeNode node) {
+            int count = 0;
+            for (int i = 0; i < node.getChildCount(); i++) {
+                final DefaultMutableTreeNode child = (DefaultMutableTreeNode) node.getChildAt(i);
+                count += child.getUserObject() instanceof CompileMessage ? 1 : child.getChildCount();
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Fingerprint of everything a target's output depends on: the SDK version and executables, the compiler arguments,
+ * the input file and all files it includes. If neither the fingerprint nor the outputs changed since the last
+ * successful build, compiling the target again would produce the same output.
+ */
+class PureBasicTargetFingerprint {
+    private PureBasicTargetFingerprint() {
+    }
+
+    /**
+     * @return the fingerprint as hex string or null if the target can't be compiled at all
+     */
+    @Nullable
+    static String compute(@NotNull PureBasicCompiler sdk, @NotNull File inputFile, @NotNull File outputFile) {
+        final File sdkHome = sdk.getSdkHome() != null ? new File(sdk.getSdkHome()) : null;
+        return compute(sdk, sdk.createCompileCommand(inputFile, outputFile),
+                PureBasicIncludeScanner.scan(inputFile, sdkHome));
+    }
+
+    /**
+     * @param files the input file and all files it includes, see {@link PureBasicIncludeScanner}
+     * @return the fingerprint of checking the input file for errors, or null if it can't be checked at all
+     */
+    @Nullable
+    static String computeCheck(@NotNull PureBasicCompiler sdk, @NotNull File inputFile, @NotNull List<File> files) {
+        return compute(sdk, sdk.createCheckCommand(inputFile), files);
+    }
+
+    @Nullable
+    private static String compute(@NotNull PureBasicCompiler sdk, @Nullable String[] command,
+                                  @NotNull List<File> files) {
+        if (command == null) {
+            return null;
+        }
+
+        final MessageDigest digest = PureBasicDigest.sha256();
+
+        final PureBasicCompilerInfo info = sdk.getInfo();
+        update(digest, sdk.getVersionString());
+        update(digest, info != null ? info.getIdentity() : null);
+        for (String argument : command) {
+            update(digest, argument);
+        }
+
+        for (File file : files) {
+            update(digest, file.getPath());
+            try {
+                PureBasicDigest.update(digest, file.toPath());
+                update(digest, "");
+            } catch (IOException e) {
+                // a missing include fails the build, but it must not be mistaken for an empty file
+                update(digest, "\u0000missing");
+            }
+        }
+
+        return PureBasicDigest.toHex(digest);
+    }
+
+    /**
+     * @param outputs the outputs of a target, see {@link PureBasicCompiler#getOutputs(File)}
+     * @return the size and modification time of every output file and the modification time of every output
+     * directory, or null if any of them is missing
+     */
+    @Nullable
+    static String stampOutput(@NotNull List<File> outputs) {
+        final StringBuilder sb = new StringBuilder();
+        for (File output : outputs) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            if (output.isFile()) {
+                sb.append(output.length()).append(':').append(output.lastModified());
+            } else if (output.isDirectory()) {
+                sb.append("dir:").append(output.lastModified());
+            } else {
+                return null;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void update(@NotNull MessageDigest digest, @Nullable String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+}
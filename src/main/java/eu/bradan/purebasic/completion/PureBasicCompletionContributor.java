@@ -46,10 +46,13 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Objects;
 
 public class PureBasicCompletionContributor extends CompletionContributor {
 
     private final HashMap<PureBasicCompiler, ArrayList<String>> predefinedEntries = new HashMap<>();
+    // the identity of the compiler the entries have been collected for, a changed resident changes it
+    private final HashMap<PureBasicCompiler, String> predefinedIdentities = new HashMap<>();
 
     public PureBasicCompletionContributor() {
         // ensure the compilers are all loaded
@@ -101,7 +104,9 @@ public class PureBasicCompletionContributor extends CompletionContributor {
     }
 
     private ArrayList<String> getPredefinedEntries(PureBasicCompiler compiler) {
-        if (predefinedEntries.containsKey(compiler)) {
+        final String identity = compiler.getIdentity();
+        if (predefinedEntries.containsKey(compiler)
+                && Objects.equals(identity, predefinedIdentities.get(compiler))) {
             return predefinedEntries.get(compiler);
         }
 
@@ -129,6 +134,7 @@ public class PureBasicCompletionContributor extends CompletionContributor {
         });
 
         predefinedEntries.put(compiler, entries);
+        predefinedIdentities.put(compiler, identity);
         return entries;
     }
 }
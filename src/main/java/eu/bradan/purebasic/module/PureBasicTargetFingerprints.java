@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.module;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
+import com.intellij.util.xmlb.XmlSerializerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers the fingerprint of every target of a module after its last successful build, so unchanged targets
+ * don't have to be compiled again. The fingerprints only describe the outputs on this machine, so they are kept in
+ * the workspace instead of the shared module file.
+ */
+@State(name = "PureBasicBuild", storages = {@Storage(StoragePathMacros.WORKSPACE_FILE)})
+public class PureBasicTargetFingerprints implements PersistentStateComponent<PureBasicTargetFingerprintsState> {
+    public PureBasicTargetFingerprintsState state = new PureBasicTargetFingerprintsState();
+
+    @NotNull
+    @Override
+    public synchronized PureBasicTargetFingerprintsState getState() {
+        return state;
+    }
+
+    @Override
+    public synchronized void loadState(@NotNull PureBasicTargetFingerprintsState state) {
+        XmlSerializerUtil.copyBean(state, this.state);
+    }
+
+    public synchronized boolean isUpToDate(@NotNull String target, @Nullable String fingerprint,
+                                           @Nullable String outputStamp) {
+        return fingerprint != null && outputStamp != null
+                && (fingerprint + " " + outputStamp).equals(state.getFingerprints().get(target));
+    }
+
+    /**
+     * Stores the fingerprint of a successful build, or forgets it if fingerprint or outputStamp is null.
+     */
+    public synchronized void update(@NotNull String target, @Nullable String fingerprint,
+                                    @Nullable String outputStamp) {
+        if (fingerprint != null && outputStamp != null) {
+            state.getFingerprints().put(target, fingerprint + " " + outputStamp);
+        } else {
+            state.getFingerprints().remove(target);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.psi;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.Language;
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.TokenType;
+import com.intellij.psi.impl.source.tree.LazyParseableElement;
+import com.intellij.psi.tree.ICompositeElementType;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.IReparseableElementType;
+import com.intellij.psi.tree.TokenSet;
+import eu.bradan.purebasic.PureBasicLanguage;
+import eu.bradan.purebasic.PureBasicLexerAdapter;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Supplier;
+
+/**
+ * A block which is reparsed on its own after an edit inside of it, as long as its new text still is exactly one
+ * block of the same kind. The parser parses it as an extra root, so the rest of the file is left alone.
+ */
+public class PureBasicBlockElementType extends IReparseableElementType implements ICompositeElementType {
+    // the token types are created after the element types, so they are only looked up when needed
+    private final Supplier<TokenSet> heads;
+    private final Supplier<IElementType> foot;
+
+    PureBasicBlockElementType(@NotNull @NonNls String debugName, @NotNull Supplier<TokenSet> heads,
+                              @NotNull Supplier<IElementType> foot) {
+        super(debugName, PureBasicLanguage.INSTANCE);
+        this.heads = heads;
+        this.foot = foot;
+    }
+
+    /**
+     * Creates the element types of the parser, see elementTypeFactory in PureBasic.bnf.
+     */
+    @NotNull
+    public static IElementType create(@NotNull @NonNls String debugName) {
+        switch (debugName) {
+            case "PROCEDURE_BLOCK":
+                return new PureBasicBlockElementType(debugName, () -> Keywords.PROCEDURE_HEADS,
+                        () -> PureBasicTypes.KEYWORD_ENDPROCEDURE);
+            case "MACRO_BLOCK":
+                return new PureBasicBlockElementType(debugName, () -> Keywords.MACRO_HEADS,
+                        () -> PureBasicTypes.KEYWORD_ENDMACRO);
+            case "DECLARE_MODULE_BLOCK":
+                return new PureBasicBlockElementType(debugName, () -> Keywords.DECLARE_MODULE_HEADS,
+                        () -> PureBasicTypes.KEYWORD_ENDDECLAREMODULE);
+            case "DEFINE_MODULE_BLOCK":
+                return new PureBasicBlockElementType(debugName, () -> Keywords.DEFINE_MODULE_HEADS,
+                        () -> PureBasicTypes.KEYWORD_ENDMODULE);
+            case "DATA_SECTION_BODY":
+                return new PureBasicDataSectionBodyElementType(debugName);
+            default:
+                return new PureBasicElementType(debugName);
+        }
+    }
+
+    /**
+     * @return the node of a block parsed with the file
+     */
+    @NotNull
+    @Override
+    public ASTNode createCompositeNode() {
+        return new LazyParseableElement(this, null);
+    }
+
+    /**
+     * @return the node of a block which is parsed on its own when its children are needed
+     */
+    @Override
+    public ASTNode createNode(CharSequence text) {
+        return new LazyParseableElement(this, text);
+    }
+
+    @Override
+    public boolean isParsable(@Nullable ASTNode parent, @NotNull CharSequence buffer, @NotNull Language fileLanguage,
+                              @NotNull Project project) {
+        final Lexer lexer = new PureBasicLexerAdapter();
+        lexer.start(buffer);
+        if (!heads.get().contains(lexer.getTokenType())) {
+            return false;
+        }
+        lexer.advance();
+
+        // these blocks don't nest, so another head or foot means the edit changed the structure of the file
+        boolean footSeen = false;
+        for (IElementType type; (type = lexer.getTokenType()) != null; lexer.advance()) {
+            if ((footSeen && type != TokenType.WHITE_SPACE) || heads.get().contains(type)) {
+                return false;
+            }
+            footSeen |= type == foot.get();
+        }
+        return footSeen;
+    }
+
+    private static class Keywords {
+        static final TokenSet PROCEDURE_HEADS = TokenSet.create(
+                PureBasicTypes.KEYWORD_PROCEDURE,
+                PureBasicTypes.KEYWORD_PROCEDUREC,
+                PureBasicTypes.KEYWORD_PROCEDUREDLL,
+                PureBasicTypes.KEYWORD_PROCEDURECDLL
+        );
+        static final TokenSet MACRO_HEADS = TokenSet.create(PureBasicTypes.KEYWORD_MACRO);
+        static final TokenSet DECLARE_MODULE_HEADS = TokenSet.create(PureBasicTypes.KEYWORD_DECLAREMODULE);
+        static final TokenSet DEFINE_MODULE_HEADS = TokenSet.create(PureBasicTypes.KEYWORD_MODULE);
+    }
+}
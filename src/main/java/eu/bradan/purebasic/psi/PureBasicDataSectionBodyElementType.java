@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package eu.bradan.purebasic.psi;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.Language;
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.TokenType;
+import com.intellij.psi.impl.source.tree.LazyParseableElement;
+import com.intellij.psi.tree.ICompositeElementType;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.IReparseableElementType;
+import eu.bradan.purebasic.PureBasicLanguage;
+import eu.bradan.purebasic.PureBasicLexerAdapter;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The body of a DataSection between its head and its foot. It often holds thousands of generated Data lines, so the
+ * parser collapses it into a single node whose children are only parsed when they are needed. An edit inside of it
+ * just replaces its text.
+ */
+public class PureBasicDataSectionBodyElementType extends IReparseableElementType implements ICompositeElementType {
+    PureBasicDataSectionBodyElementType(@NotNull @NonNls String debugName) {
+        super(debugName, PureBasicLanguage.INSTANCE);
+    }
+
+    /**
+     * @return the node of a body parsed right away, as its DataSection has no foot
+     */
+    @NotNull
+    @Override
+    public ASTNode createCompositeNode() {
+        return new LazyParseableElement(this, null);
+    }
+
+    /**
+     * @return the node of a collapsed body
+     */
+    @Override
+    public ASTNode createNode(CharSequence text) {
+        return new LazyParseableElement(this, text);
+    }
+
+    @Override
+    public boolean isParsable(@Nullable ASTNode parent, @NotNull CharSequence buffer, @NotNull Language fileLanguage,
+                              @NotNull Project project) {
+        final Lexer lexer = new PureBasicLexerAdapter();
+        lexer.start(buffer);
+        if (lexer.getTokenType() != PureBasicTypes.SEPARATOR) {
+            return false;
+        }
+
+        // the body has to end with a separator, and a DataSection keyword would end or nest the block
+        IElementType last = null;
+        for (IElementType type; (type = lexer.getTokenType()) != null; lexer.advance()) {
+            if (type == PureBasicTypes.KEYWORD_DATASECTION || type == PureBasicTypes.KEYWORD_ENDDATASECTION) {
+                return false;
+            }
+            if (type != TokenType.WHITE_SPACE) {
+                last = type;
+            }
+        }
+        return last == PureBasicTypes.SEPARATOR;
+    }
+}
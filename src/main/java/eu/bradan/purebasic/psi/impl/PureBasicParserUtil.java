@@ -25,6 +25,9 @@ package eu.bradan.purebasic.psi.impl;
 
 import com.intellij.lang.PsiBuilder;
 import com.intellij.lang.parser.GeneratedParserUtilBase;
+import com.intellij.psi.tree.IElementType;
+import eu.bradan.purebasic.PureBasicParser;
+import eu.bradan.purebasic.psi.PureBasicTypes;
 
 public class PureBasicParserUtil extends GeneratedParserUtilBase {
     @SuppressWarnings("SameReturnValue")
@@ -47,4 +50,26 @@ public class PureBasicParserUtil extends GeneratedParserUtilBase {
         report_error_(b, r);
         return r;
     }
+
+    /**
+     * Collapses the body of a DataSection into a single node, which is only parsed when its children are needed.
+     * Without an EndDataSection before the end of the file or the next DataSection the body is parsed right away, so
+     * the rest of the file stays visible.
+     */
+    public static boolean parseLazyDataSectionBody(PsiBuilder b, int l) {
+        if (!recursion_guard_(b, l, "parseLazyDataSectionBody")) return false;
+        if (b.getTokenType() != PureBasicTypes.SEPARATOR) return false;
+        PsiBuilder.Marker m = b.mark();
+        IElementType type;
+        while ((type = b.getTokenType()) != null && type != PureBasicTypes.KEYWORD_ENDDATASECTION
+                && type != PureBasicTypes.KEYWORD_DATASECTION) {
+            b.advanceLexer();
+        }
+        if (type != PureBasicTypes.KEYWORD_ENDDATASECTION) {
+            m.rollbackTo();
+            return PureBasicParser.data_section_body(b, l + 1);
+        }
+        m.collapse(PureBasicTypes.DATA_SECTION_BODY);
+        return true;
+    }
 }
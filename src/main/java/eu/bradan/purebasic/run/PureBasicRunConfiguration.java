@@ -81,6 +81,10 @@ public class PureBasicRunConfiguration extends RunConfigurationBase<PureBasicRun
     @Nullable
     @Override
     public RunProfileState getState(@NotNull Executor executor, @NotNull ExecutionEnvironment executionEnvironment) throws ExecutionException {
+        final PureBasicTargetSettings target = getTarget();
+        if (target != null && target.getSdk() != null && target.getSdk().isSpiderBasic()) {
+            return new SpiderBasicRunProfileState(executionEnvironment);
+        }
         return new PureBasicRunProfileState(executionEnvironment);
     }
 
@@ -131,13 +135,19 @@ public class PureBasicRunConfiguration extends RunConfigurationBase<PureBasicRun
         }
     }
 
-    public GeneralCommandLine getCommandLine(boolean standaloneDebugger) {
+    @Nullable
+    @Transient
+    public File getOutputFile() {
         final PureBasicTargetSettings target = getTarget();
-
-        File executable = null;
-        if (module != null && target != null) {
-            executable = new File(new File(module.getModuleFilePath()).getParentFile(), target.getOutputFile());
+        if (module == null || target == null) {
+            return null;
         }
+        return new File(new File(module.getModuleFilePath()).getParentFile(), target.getOutputFile());
+    }
+
+    public GeneralCommandLine getCommandLine(boolean standaloneDebugger) {
+        final PureBasicTargetSettings target = getTarget();
+        final File executable = getOutputFile();
 
         if (executable == null) {
             return null;
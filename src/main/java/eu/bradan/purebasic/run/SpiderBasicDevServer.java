@@ -0,0 +1,463 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.run;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A minimal HTTP server on localhost for the output directory of a SpiderBasic target.
+ * <p>
+ * Files are sent with {@link FileChannel#transferTo}, so they are never copied into the heap, and carry an ETag
+ * built from their size and modification time, so reloading the page only transfers what a build changed. HTML
+ * pages get a script injected which reloads them as soon as the server sends an event on {@link #RELOAD_PATH}. An
+ * event is sent whenever the watched file, the JavaScript output of the target, changed and stopped changing.
+ * <p>
+ * Connections are kept alive. The body of a request, which no supported method needs, is skipped, so the next
+ * request on the connection is read from its start.
+ * <p>
+ * Every connection is served by its own pooled thread with blocking channels, a browser only opens a few.
+ */
+public class SpiderBasicDevServer {
+    static final String RELOAD_PATH = "/__reload";
+    static final long POLL_INTERVAL_MS = 250;
+    static final int MAX_HEADER_SIZE = 16 * 1024;
+
+    private static final Logger LOG = Logger.getInstance(SpiderBasicDevServer.class);
+    private static final String RELOAD_SCRIPT = "<script>new EventSource('" + RELOAD_PATH
+            + "').onmessage = function () { location.reload(); };</script>";
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put("html", "text/html; charset=utf-8");
+        CONTENT_TYPES.put("htm", "text/html; charset=utf-8");
+        CONTENT_TYPES.put("js", "application/javascript; charset=utf-8");
+        CONTENT_TYPES.put("css", "text/css; charset=utf-8");
+        CONTENT_TYPES.put("json", "application/json");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("woff", "font/woff");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+        CONTENT_TYPES.put("ttf", "font/ttf");
+        CONTENT_TYPES.put("wasm", "application/wasm");
+    }
+
+    private final Path root;
+    private final String indexFile;
+    private final Path watchedFile;
+    private final Set<SocketChannel> channels = ConcurrentHashMap.newKeySet();
+    private final Set<SocketChannel> reloadClients = ConcurrentHashMap.newKeySet();
+    private ServerSocketChannel server;
+    private ScheduledFuture<?> watcher;
+    private String watchedStamp;
+    private boolean watchedChanged;
+
+    /**
+     * @param indexFile   the page served for "/", relative to root
+     * @param watchedFile the file whose changes reload the pages, null to never reload
+     */
+    public SpiderBasicDevServer(@NotNull Path root, @NotNull String indexFile, @Nullable Path watchedFile) {
+        this.root = root.toAbsolutePath().normalize();
+        this.indexFile = indexFile;
+        this.watchedFile = watchedFile;
+    }
+
+    /**
+     * @param port the port to listen on, 0 for any free port
+     * @return the port the server listens on
+     */
+    public synchronized int start(int port) throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        AppExecutorUtil.getAppExecutorService().execute(this::accept);
+        if (watchedFile != null) {
+            watchedStamp = stamp(watchedFile);
+            watcher = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(this::checkWatchedFile,
+                    POLL_INTERVAL_MS, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    public synchronized void stop() {
+        if (watcher != null) {
+            watcher.cancel(false);
+            watcher = null;
+        }
+        try {
+            if (server != null) {
+                server.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to stop the SpiderBasic server", e);
+        }
+        for (SocketChannel channel : channels) {
+            closeQuietly(channel);
+        }
+        channels.clear();
+        reloadClients.clear();
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                final SocketChannel channel = server.accept();
+                channels.add(channel);
+                if (!server.isOpen()) {
+                    // stopped while accepting, stop() might have missed this channel
+                    channels.remove(channel);
+                    closeQuietly(channel);
+                    return;
+                }
+                AppExecutorUtil.getAppExecutorService().execute(() -> serve(channel));
+            }
+        } catch (ClosedChannelException ignored) {
+            // stopped
+        } catch (IOException e) {
+            LOG.warn("The SpiderBasic server stopped accepting connections", e);
+        }
+    }
+
+    private void serve(@NotNull SocketChannel channel) {
+        final ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_SIZE);
+        try {
+            Request request;
+            while ((request = readRequest(channel, buffer)) != null) {
+                if (RELOAD_PATH.equals(request.path)) {
+                    // the connection stays open for the events
+                    writeHeaders(channel, "200 OK", "text/event-stream", -1, null, false);
+                    reloadClients.add(channel);
+                    return;
+                }
+                if (!respond(channel, buffer, request)) {
+                    break;
+                }
+            }
+        } catch (IOException ignored) {
+            // the browser went away
+        }
+        channels.remove(channel);
+        closeQuietly(channel);
+    }
+
+    /**
+     * @return the next request on the connection, {@link Request#MALFORMED} if it can't be understood or its header
+     * doesn't fit into the buffer, null if the connection has been closed
+     */
+    @Nullable
+    private static Request readRequest(@NotNull SocketChannel channel, @NotNull ByteBuffer buffer)
+            throws IOException {
+        while (true) {
+            final int end = findHeaderEnd(buffer);
+            if (end >= 0) {
+                final String header = new String(buffer.array(), 0, end, StandardCharsets.ISO_8859_1);
+                // keep what belongs to the next request
+                final int next = end + 4;
+                final int remaining = buffer.position() - next;
+                System.arraycopy(buffer.array(), next, buffer.array(), 0, remaining);
+                buffer.position(remaining);
+                final Request request = Request.parse(header);
+                return request != null ? request : Request.MALFORMED;
+            }
+            if (!buffer.hasRemaining()) {
+                return Request.MALFORMED;
+            }
+            if (channel.read(buffer) < 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Skips the body of a request which has been read up to its header, so the next request on the connection
+     * starts at the beginning of the buffer.
+     *
+     * @return whether the body could be skipped, the connection can't be used any further if not
+     */
+    private static boolean discardBody(@NotNull SocketChannel channel, @NotNull ByteBuffer buffer,
+                                       @NotNull Request request) throws IOException {
+        if (request.headers.containsKey("transfer-encoding")) {
+            return false;
+        }
+        final String contentLength = request.headers.get("content-length");
+        if (contentLength == null) {
+            return true;
+        }
+        long length;
+        try {
+            length = Long.parseLong(contentLength);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (length < 0) {
+            return false;
+        }
+
+        final int buffered = (int) Math.min(length, buffer.position());
+        System.arraycopy(buffer.array(), buffered, buffer.array(), 0, buffer.position() - buffered);
+        buffer.position(buffer.position() - buffered);
+        length -= buffered;
+        while (length > 0) {
+            // the buffer is empty here, the next request can only start after the body
+            buffer.clear().limit((int) Math.min(buffer.capacity(), length));
+            final int read = channel.read(buffer);
+            if (read < 0) {
+                return false;
+            }
+            length -= read;
+        }
+        buffer.clear();
+        return true;
+    }
+
+    private static int findHeaderEnd(@NotNull ByteBuffer buffer) {
+        final byte[] data = buffer.array();
+        for (int i = 0; i + 3 < buffer.position(); i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n' && data[i + 2] == '\r' && data[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether the connection can be used for another request
+     */
+    private boolean respond(@NotNull SocketChannel channel, @NotNull ByteBuffer buffer, @NotNull Request request)
+            throws IOException {
+        if (request == Request.MALFORMED) {
+            writeHeaders(channel, "400 Bad Request", null, 0, null, false);
+            return false;
+        }
+        final boolean keepAlive = discardBody(channel, buffer, request)
+                && !"close".equalsIgnoreCase(request.headers.get("connection"));
+        if (!"GET".equals(request.method) && !"HEAD".equals(request.method)) {
+            writeHeaders(channel, "405 Method Not Allowed", null, 0, null, keepAlive);
+            return keepAlive;
+        }
+
+        final Path file = resolve(request.path);
+        if (file == null || !Files.isRegularFile(file)) {
+            writeHeaders(channel, "404 Not Found", null, 0, null, keepAlive);
+            return keepAlive;
+        }
+
+        final long size = Files.size(file);
+        final String etag = "\"" + Long.toHexString(size) + "-"
+                + Long.toHexString(Files.getLastModifiedTime(file).toMillis()) + "\"";
+        if (etag.equals(request.headers.get("if-none-match"))) {
+            writeHeaders(channel, "304 Not Modified", null, -1, etag, keepAlive);
+            return keepAlive;
+        }
+
+        final String contentType = getContentType(file);
+        final boolean head = "HEAD".equals(request.method);
+        if (contentType.startsWith("text/html")) {
+            final ByteBuffer page = ByteBuffer.wrap(injectReloadScript(Files.readAllBytes(file)));
+            writeHeaders(channel, "200 OK", contentType, page.remaining(), etag, keepAlive);
+            while (!head && page.hasRemaining()) {
+                channel.write(page);
+            }
+            return keepAlive;
+        }
+
+        writeHeaders(channel, "200 OK", contentType, size, etag, keepAlive);
+        if (!head) {
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                long position = 0;
+                while (position < size) {
+                    position += in.transferTo(position, size - position, channel);
+                }
+            }
+        }
+        return keepAlive;
+    }
+
+    /**
+     * @return the file of a request path, null if it is outside of the root
+     */
+    @Nullable
+    private Path resolve(@NotNull String path) {
+        if (path.equals("/")) {
+            path = "/" + indexFile;
+        }
+        final Path file = root.resolve(path.substring(1)).normalize();
+        return file.startsWith(root) ? file : null;
+    }
+
+    @NotNull
+    private static String getContentType(@NotNull Path file) {
+        final String name = file.getFileName().toString();
+        final int dot = name.lastIndexOf('.');
+        final String extension = dot >= 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+        return CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+    }
+
+    @NotNull
+    static byte[] injectReloadScript(@NotNull byte[] page) {
+        final String html = new String(page, StandardCharsets.UTF_8);
+        final int body = html.toLowerCase(Locale.ROOT).lastIndexOf("</body>");
+        final String result = body >= 0
+                ? html.substring(0, body) + RELOAD_SCRIPT + html.substring(body)
+                : html + RELOAD_SCRIPT;
+        return result.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param contentLength -1 to send no length
+     */
+    private static void writeHeaders(@NotNull SocketChannel channel, @NotNull String status,
+                                     @Nullable String contentType, long contentLength, @Nullable String etag,
+                                     boolean keepAlive) throws IOException {
+        final StringBuilder sb = new StringBuilder("HTTP/1.1 ").append(status).append("\r\n");
+        if (contentType != null) {
+            sb.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        if (contentLength >= 0) {
+            sb.append("Content-Length: ").append(contentLength).append("\r\n");
+        }
+        if (etag != null) {
+            sb.append("ETag: ").append(etag).append("\r\n");
+        }
+        // the browser has to ask every time, the ETag keeps that cheap
+        sb.append("Cache-Control: no-cache\r\n");
+        sb.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+        final ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void checkWatchedFile() {
+        final String stamp = stamp(watchedFile);
+        if (Objects.equals(stamp, watchedStamp)) {
+            // reload once the compiler is done writing
+            if (watchedChanged) {
+                watchedChanged = false;
+                sendReload();
+            }
+        } else {
+            watchedStamp = stamp;
+            watchedChanged = stamp != null;
+        }
+    }
+
+    void sendReload() {
+        final byte[] event = "data: reload\n\n".getBytes(StandardCharsets.ISO_8859_1);
+        for (SocketChannel client : reloadClients) {
+            try {
+                final ByteBuffer buffer = ByteBuffer.wrap(event);
+                while (buffer.hasRemaining()) {
+                    client.write(buffer);
+                }
+            } catch (IOException e) {
+                reloadClients.remove(client);
+                closeQuietly(client);
+            }
+        }
+    }
+
+    @Nullable
+    private static String stamp(@NotNull Path file) {
+        try {
+            return Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(@NotNull SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static class Request {
+        /**
+         * Stands for a request which can't be answered but with a 400, the connection is closed after it.
+         */
+        static final Request MALFORMED = new Request("", "");
+
+        final String method;
+        final String path;
+        final Map<String, String> headers = new HashMap<>();
+
+        private Request(@NotNull String method, @NotNull String path) {
+            this.method = method;
+            this.path = path;
+        }
+
+        @Nullable
+        static Request parse(@NotNull String header) {
+            final String[] lines = header.split("\r\n");
+            final String[] requestLine = lines[0].split(" ");
+            if (requestLine.length != 3) {
+                return null;
+            }
+            final String path;
+            try {
+                path = new URI(requestLine[1]).getPath();
+            } catch (URISyntaxException e) {
+                return null;
+            }
+            if (path == null || !path.startsWith("/")) {
+                return null;
+            }
+            final Request request = new Request(requestLine[0], path);
+            for (int i = 1; i < lines.length; i++) {
+                final int colon = lines[i].indexOf(':');
+                if (colon > 0) {
+                    request.headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                            lines[i].substring(colon + 1).trim());
+                }
+            }
+            return request;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.run;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.CommandLineState;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.execution.process.ProcessOutputTypes;
+import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.ide.BrowserUtil;
+import eu.bradan.purebasic.Texts;
+import eu.bradan.purebasic.builder.PureBasicCompiler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Runs a SpiderBasic target by serving its output directory with a {@link SpiderBasicDevServer} and opening it in
+ * the browser. The page reloads itself whenever the target has been built again, until the run is stopped.
+ */
+public class SpiderBasicRunProfileState extends CommandLineState {
+    protected SpiderBasicRunProfileState(ExecutionEnvironment environment) {
+        super(environment);
+    }
+
+    @NotNull
+    @Override
+    protected ProcessHandler startProcess() throws ExecutionException {
+        final PureBasicRunConfiguration runProfile = (PureBasicRunConfiguration) getEnvironment().getRunProfile();
+        final File outputFile = runProfile.getOutputFile();
+        if (outputFile == null) {
+            throw new ExecutionException(Texts.get("noRunTarget"));
+        }
+
+        final SpiderBasicDevServer server = new SpiderBasicDevServer(outputFile.getParentFile().toPath(),
+                outputFile.getName(), PureBasicCompiler.getJsFile(outputFile).toPath());
+        final int port;
+        try {
+            port = server.start(0);
+        } catch (IOException e) {
+            throw new ExecutionException(String.format(Texts.get("devServerFailed"), e.getMessage()), e);
+        }
+        return new DevServerProcessHandler(server, "http://localhost:" + port + "/");
+    }
+
+    private static class DevServerProcessHandler extends ProcessHandler {
+        private final SpiderBasicDevServer server;
+        private final String url;
+
+        DevServerProcessHandler(@NotNull SpiderBasicDevServer server, @NotNull String url) {
+            this.server = server;
+            this.url = url;
+        }
+
+        @Override
+        public void startNotify() {
+            super.startNotify();
+            notifyTextAvailable(String.format(Texts.get("devServerStarted"), url) + "\n", ProcessOutputTypes.SYSTEM);
+            BrowserUtil.browse(url);
+        }
+
+        @Override
+        protected void destroyProcessImpl() {
+            server.stop();
+            notifyProcessTerminated(0);
+        }
+
+        @Override
+        protected void detachProcessImpl() {
+            server.stop();
+            notifyProcessDetached();
+        }
+
+        @Override
+        public boolean detachIsDefault() {
+            return false;
+        }
+
+        @Nullable
+        @Override
+        public OutputStream getProcessInput() {
+            return null;
+        }
+    }
+}
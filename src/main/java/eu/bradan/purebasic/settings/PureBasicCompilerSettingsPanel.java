@@ -45,9 +45,17 @@ public class PureBasicCompilerSettingsPanel {
     private JButton buttonAddSdk;
     private JPanel root;
     private JPanel panelSdks;
+    private JSpinner spinnerBuildWorkers;
+    private JSpinner spinnerCompileTimeout;
+    private JSpinner spinnerLogCapacity;
+    private JCheckBox checkBoxCheckOnSave;
+    private JCheckBox checkBoxBuildOnSave;
 
     public PureBasicCompilerSettingsPanel() {
         panelSdks.setLayout(new BoxLayout(panelSdks, BoxLayout.Y_AXIS));
+        spinnerBuildWorkers.setModel(new SpinnerNumberModel(0, 0, 64, 1));
+        spinnerCompileTimeout.setModel(new SpinnerNumberModel(600, 0, 86400, 10));
+        spinnerLogCapacity.setModel(new SpinnerNumberModel(10000, 100, 10000000, 1000));
 
         buttonAddSdk.addActionListener(new ActionListener() {
             @Override
@@ -69,6 +77,11 @@ public class PureBasicCompilerSettingsPanel {
         for (PureBasicCompiler compiler : data.getSdks()) {
             panelSdks.add(new PBCompilerPanel(panelSdks, compiler.getSdkHome(), compiler.getLabels()));
         }
+        spinnerBuildWorkers.setValue(data.getBuildWorkers());
+        spinnerCompileTimeout.setValue(data.getCompileTimeout());
+        spinnerLogCapacity.setValue(data.getLogCapacity());
+        checkBoxCheckOnSave.setSelected(data.isCheckOnSave());
+        checkBoxBuildOnSave.setSelected(data.isBuildOnSave());
     }
 
     public void getData(@NotNull PureBasicCompilerSettingsState data) {
@@ -84,9 +97,22 @@ public class PureBasicCompilerSettingsPanel {
                 data.addSdk(compiler);
             }
         }
+        data.setBuildWorkers((Integer) spinnerBuildWorkers.getValue());
+        data.setCompileTimeout((Integer) spinnerCompileTimeout.getValue());
+        data.setLogCapacity((Integer) spinnerLogCapacity.getValue());
+        data.setCheckOnSave(checkBoxCheckOnSave.isSelected());
+        data.setBuildOnSave(checkBoxBuildOnSave.isSelected());
     }
 
     public boolean isModified(@NotNull PureBasicCompilerSettingsState data) {
+        if (data.getBuildWorkers() != (Integer) spinnerBuildWorkers.getValue()
+                || data.getCompileTimeout() != (Integer) spinnerCompileTimeout.getValue()
+                || data.getLogCapacity() != (Integer) spinnerLogCapacity.getValue()
+                || data.isCheckOnSave() != checkBoxCheckOnSave.isSelected()
+                || data.isBuildOnSave() != checkBoxBuildOnSave.isSelected()) {
+            return true;
+        }
+
         PBCompilerPanel[] panels = Arrays.stream(panelSdks.getComponents())
                 .filter(x -> x instanceof PBCompilerPanel)
                 .map(x -> (PBCompilerPanel) x)
@@ -32,9 +32,24 @@ import java.util.LinkedList;
 public class PureBasicCompilerSettingsState {
     @OptionTag
     private final LinkedList<Sdk> sdks;
+    @OptionTag
+    private int buildWorkers;
+    @OptionTag
+    private int compileTimeout;
+    @OptionTag
+    private int logCapacity;
+    @OptionTag
+    private boolean checkOnSave;
+    @OptionTag
+    private boolean buildOnSave;
 
     public PureBasicCompilerSettingsState() {
         sdks = new LinkedList<>();
+        buildWorkers = 0;
+        compileTimeout = 600;
+        logCapacity = 10000;
+        checkOnSave = false;
+        buildOnSave = false;
     }
 
     public PureBasicCompiler[] getSdks() {
@@ -59,6 +74,65 @@ public class PureBasicCompilerSettingsState {
         sdks.clear();
     }
 
+    /**
+     * @return the amount of targets compiled at the same time, 0 means one per available processor
+     */
+    public int getBuildWorkers() {
+        return buildWorkers;
+    }
+
+    public void setBuildWorkers(int buildWorkers) {
+        this.buildWorkers = Math.max(0, buildWorkers);
+    }
+
+    public int getEffectiveBuildWorkers() {
+        return buildWorkers > 0 ? buildWorkers : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return the seconds after which a compiler gets killed, 0 means never
+     */
+    public int getCompileTimeout() {
+        return compileTimeout;
+    }
+
+    public void setCompileTimeout(int compileTimeout) {
+        this.compileTimeout = Math.max(0, compileTimeout);
+    }
+
+    /**
+     * @return the amount of compiler output lines kept in memory, older lines are moved to disk
+     */
+    public int getLogCapacity() {
+        return logCapacity;
+    }
+
+    public void setLogCapacity(int logCapacity) {
+        this.logCapacity = Math.max(100, logCapacity);
+    }
+
+    /**
+     * @return whether saved files are checked for syntax errors in the background
+     */
+    public boolean isCheckOnSave() {
+        return checkOnSave;
+    }
+
+    public void setCheckOnSave(boolean checkOnSave) {
+        this.checkOnSave = checkOnSave;
+    }
+
+    /**
+     * @return whether saving a file builds the targets including it in the background
+     */
+    public boolean isBuildOnSave() {
+        return buildOnSave;
+    }
+
+    public void setBuildOnSave(boolean buildOnSave) {
+        this.buildOnSave = buildOnSave;
+    }
+
     private static class Sdk {
         private String home;
         private String labels;
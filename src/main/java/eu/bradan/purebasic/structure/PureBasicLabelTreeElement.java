@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package eu.bradan.purebasic.structure;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.ide.projectView.PresentationData;
+import com.intellij.ide.structureView.StructureViewTreeElement;
+import com.intellij.ide.util.treeView.smartTree.TreeElement;
+import com.intellij.navigation.ItemPresentation;
+import com.intellij.openapi.util.Pair;
+import com.intellij.pom.Navigatable;
+import com.intellij.pom.PsiNavigationSupport;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A label inside of a DataSection body which hasn't been parsed yet. It navigates to the label's offset instead of
+ * its PSI element, so the body is only parsed once the editor needs it.
+ */
+public class PureBasicLabelTreeElement implements StructureViewTreeElement {
+    private final PsiElement body;
+    private final int offset;
+    private final String text;
+
+    public PureBasicLabelTreeElement(@NotNull PsiElement body, int offset, @NotNull String text) {
+        this.body = body;
+        this.offset = offset;
+        this.text = text;
+    }
+
+    /**
+     * @return the body together with the label's offset in it, which tells the labels apart without parsing the body
+     */
+    @Override
+    public Object getValue() {
+        return Pair.create(body, offset);
+    }
+
+    @NotNull
+    @Override
+    public ItemPresentation getPresentation() {
+        return new PresentationData(text, "", AllIcons.Nodes.Variable, null);
+    }
+
+    @NotNull
+    @Override
+    public TreeElement[] getChildren() {
+        return new TreeElement[0];
+    }
+
+    @Nullable
+    private Navigatable getNavigatable() {
+        final PsiFile file = body.getContainingFile();
+        if (!body.isValid() || file == null || file.getVirtualFile() == null) {
+            return null;
+        }
+        return PsiNavigationSupport.getInstance().createNavigatable(body.getProject(), file.getVirtualFile(),
+                body.getTextRange().getStartOffset() + offset);
+    }
+
+    @Override
+    public void navigate(boolean requestFocus) {
+        final Navigatable navigatable = getNavigatable();
+        if (navigatable != null) {
+            navigatable.navigate(requestFocus);
+        }
+    }
+
+    @Override
+    public boolean canNavigate() {
+        return getNavigatable() != null;
+    }
+
+    @Override
+    public boolean canNavigateToSource() {
+        return canNavigate();
+    }
+}
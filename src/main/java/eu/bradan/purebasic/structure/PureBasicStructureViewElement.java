@@ -27,10 +27,13 @@ import com.intellij.icons.AllIcons;
 import com.intellij.ide.projectView.PresentationData;
 import com.intellij.ide.structureView.StructureViewTreeElement;
 import com.intellij.ide.util.treeView.smartTree.TreeElement;
+import com.intellij.lexer.Lexer;
 import com.intellij.navigation.ItemPresentation;
 import com.intellij.psi.NavigatablePsiElement;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.impl.source.tree.LazyParseableElement;
 import com.intellij.psi.util.PsiTreeUtil;
+import eu.bradan.purebasic.PureBasicLexerAdapter;
 import eu.bradan.purebasic.psi.*;
 import org.jetbrains.annotations.NotNull;
 
@@ -75,20 +78,36 @@ public class PureBasicStructureViewElement implements StructureViewTreeElement {
                 : new PresentationData(element.getText(), "", AllIcons.Nodes.Variable, null);
     }
 
-    private void findChildren(PsiElement parent, Class[] classes, ArrayList<PsiElement> results) {
+    private void findChildren(PsiElement parent, Class[] classes, ArrayList<TreeElement> results) {
         if (parent == null) {
             return;
         }
 
         for (PsiElement e : parent.getChildren()) {
             if (PsiTreeUtil.instanceOf(e, classes)) {
-                results.add(e);
+                results.add(new PureBasicStructureViewElement((NavigatablePsiElement) e));
+            } else if (e instanceof PureBasicDataSectionBody && !((LazyParseableElement) e.getNode()).isParsed()) {
+                findLabels(e, results);
             } else {
                 findChildren(e, classes, results);
             }
         }
     }
 
+    /**
+     * Looks up the labels of a DataSection body with the lexer, so the body isn't parsed just to show them.
+     */
+    private void findLabels(PsiElement body, ArrayList<TreeElement> results) {
+        final Lexer lexer = new PureBasicLexerAdapter();
+        lexer.start(body.getNode().getChars());
+        for (; lexer.getTokenType() != null; lexer.advance()) {
+            if (lexer.getTokenType() == PureBasicTypes.LABEL_IDENTIFIER) {
+                results.add(new PureBasicLabelTreeElement(body, lexer.getTokenStart(),
+                        lexer.getTokenText() + ":"));
+            }
+        }
+    }
+
     @NotNull
     @Override
     public TreeElement[] getChildren() {
@@ -97,11 +116,9 @@ public class PureBasicStructureViewElement implements StructureViewTreeElement {
             classes.addAll(Arrays.asList(leafElements));
             classes.addAll(Arrays.asList(blockElements));
 
-            ArrayList<PsiElement> results = new ArrayList<>();
+            ArrayList<TreeElement> results = new ArrayList<>();
             findChildren(element, classes.toArray(new Class[0]), results);
-            return results.stream()
-                    .map(x -> new PureBasicStructureViewElement((NavigatablePsiElement) x))
-                    .toArray(TreeElement[]::new);
+            return results.toArray(new TreeElement[0]);
         }
 
         return new TreeElement[0];
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * Generates PureBasic sources of any size for measuring the lexer and the parser. The code is not meant to compile,
+ * but uses the constructs of real programs in realistic proportions, with plenty of pointers, constants,
+ * multiplications and type suffixes for the context dependent tokens. The same seed always gives the same code.
+ */
+public class PureBasicCorpus {
+    private static final String[] NAMES = {
+            "window", "gadget", "buffer", "count", "index", "result", "image", "file", "length", "position"
+    };
+
+    private PureBasicCorpus() {
+    }
+
+    @NotNull
+    public static String generate(int size, long seed) {
+        final Random random = new Random(seed);
+        final StringBuilder sb = new StringBuilder(size + 1024);
+        int n = 0;
+        while (sb.length() < size) {
+            final String a = NAMES[random.nextInt(NAMES.length)];
+            final String b = NAMES[random.nextInt(NAMES.length)];
+            sb.append("; Section ").append(n).append('\n');
+            sb.append("#").append(capitalize(a)).append(n).append("_Size = ").append(random.nextInt(4096))
+                    .append(" * SizeOf(Integer)\n");
+            sb.append("Structure ").append(capitalize(a)).append(n).append('\n');
+            sb.append("  *next.").append(capitalize(a)).append(n).append('\n');
+            sb.append("  ").append(b).append(".i\n");
+            sb.append("  name$\n");
+            sb.append("EndStructure\n\n");
+            sb.append("Procedure.i ").append(a).append("_").append(n).append("(*").append(a).append('.')
+                    .append(capitalize(a)).append(n).append(", ").append(b).append(".i = #PB_Any)\n");
+            sb.append("  Protected *p = *").append(a).append(", total.i = ").append(b).append(" * 2\n");
+            sb.append("  While *p And *p\\").append(b).append(" < #").append(capitalize(a)).append(n)
+                    .append("_Size\n");
+            sb.append("    total = total + *p\\").append(b).append(" * ").append(b)
+                    .append(" % 7 : *p = *p\\next\n");
+            sb.append("    If total >= $FF And ").append(b).append(" <> 0\n");
+            sb.append("      Debug \"").append(a).append(" overflow: \" + Str(total)\n");
+            sb.append("    EndIf\n");
+            sb.append("  Wend\n");
+            sb.append("  ProcedureReturn total << 1 | ").append(b).append(" & %1010\n");
+            sb.append("EndProcedure\n\n");
+            n++;
+        }
+        return sb.toString();
+    }
+
+    @NotNull
+    private static String capitalize(@NotNull String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+}
@@ -156,4 +156,37 @@ public class TestPureBasicLexer extends TestCase {
         assertToken(lexer, code, "PureBasicTokenType.KEYWORD_ENDPROCEDURE", "EndProcedure");
         assertEquals(lexer.yystate(), PureBasicLexer.FOLLOW_UP);
     }
+
+    @Test
+    public void testPointerAndConstant() {
+        String code = "*p = a*b + *q\nx = #Foo + s#Bar";
+
+        PureBasicLexer lexer = new PureBasicLexer(new StringReader(code));
+        lexer.reset(code, 0, code.length(), PureBasicLexer.YYINITIAL);
+
+        assertToken(lexer, code, "PureBasicTokenType.POINTER_IDENTIFIER", "*p");
+        assertToken(lexer, code, "WHITE_SPACE", " ");
+        assertToken(lexer, code, "PureBasicTokenType.OP_EQ", "=");
+        assertToken(lexer, code, "WHITE_SPACE", " ");
+        assertToken(lexer, code, "PureBasicTokenType.IDENTIFIER", "a");
+        assertToken(lexer, code, "PureBasicTokenType.OP_MUL", "*");
+        assertToken(lexer, code, "PureBasicTokenType.IDENTIFIER", "b");
+        assertToken(lexer, code, "WHITE_SPACE", " ");
+        assertToken(lexer, code, "PureBasicTokenType.OP_PLUS", "+");
+        assertToken(lexer, code, "WHITE_SPACE", " ");
+        assertToken(lexer, code, "PureBasicTokenType.POINTER_IDENTIFIER", "*q");
+        assertToken(lexer, code, "PureBasicTokenType.SEPARATOR", "\n");
+
+        assertToken(lexer, code, "PureBasicTokenType.IDENTIFIER", "x");
+        assertToken(lexer, code, "WHITE_SPACE", " ");
+        assertToken(lexer, code, "PureBasicTokenType.OP_EQ", "=");
+        assertToken(lexer, code, "WHITE_SPACE", " ");
+        assertToken(lexer, code, "PureBasicTokenType.CONSTANT_IDENTIFIER", "#Foo");
+        assertToken(lexer, code, "WHITE_SPACE", " ");
+        assertToken(lexer, code, "PureBasicTokenType.OP_PLUS", "+");
+        assertToken(lexer, code, "WHITE_SPACE", " ");
+        assertToken(lexer, code, "PureBasicTokenType.IDENTIFIER", "s");
+        assertToken(lexer, code, "PureBasicTokenType.OP_HASH", "#");
+        assertToken(lexer, code, "PureBasicTokenType.IDENTIFIER", "Bar");
+    }
 }
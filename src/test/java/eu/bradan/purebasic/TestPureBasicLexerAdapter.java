@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic;
+
+import com.intellij.psi.tree.IElementType;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+public class TestPureBasicLexerAdapter extends TestCase {
+    private static final int LINES = 20000;
+    private static final int MAX_RELEXED_TOKENS = 64;
+
+    private static List<Token> lex(CharSequence text, int start, int state, int maxTokens) {
+        final PureBasicLexerAdapter lexer = new PureBasicLexerAdapter();
+        lexer.start(text, start, text.length(), state);
+        final List<Token> tokens = new ArrayList<>();
+        while (lexer.getTokenType() != null && tokens.size() < maxTokens) {
+            tokens.add(new Token(lexer));
+            lexer.advance();
+        }
+        return tokens;
+    }
+
+    private static String corpus(int lines) {
+        final String code = PureBasicCorpus.generate(lines * 40, 7);
+        int end = 0;
+        for (int i = 0; i < lines && end >= 0; i++) {
+            end = code.indexOf('\n', end + 1);
+        }
+        return end >= 0 ? code.substring(0, end + 1) : code;
+    }
+
+    public void testContextIsPartOfTheState() {
+        final String code = "a*b : *c = d";
+        final List<Token> tokens = lex(code, 0, 0, Integer.MAX_VALUE);
+        // "*b" follows an identifier, "*c" a separator and a space
+        assertEquals("PureBasicTokenType.OP_MUL", tokens.get(1).type.toString());
+        assertEquals(PureBasicLexer.CONTEXT_NAME, tokens.get(1).state >> PureBasicLexerAdapter.CONTEXT_SHIFT);
+        assertEquals("PureBasicTokenType.POINTER_IDENTIFIER", tokens.get(6).type.toString());
+        assertEquals(PureBasicLexer.CONTEXT_STATEMENT, tokens.get(6).state >> PureBasicLexerAdapter.CONTEXT_SHIFT);
+    }
+
+    public void testResumeAtAnyToken() {
+        final String code = corpus(2000);
+        final List<Token> tokens = lex(code, 0, 0, Integer.MAX_VALUE);
+        for (int i = 0; i < tokens.size(); i += 7) {
+            final Token token = tokens.get(i);
+            final List<Token> resumed = lex(code, token.start, token.state, 32);
+            assertEquals(tokens.subList(i, Math.min(tokens.size(), i + resumed.size())), resumed);
+        }
+    }
+
+    public void testEditRelexesBoundedWindow() {
+        final String[] insertions = {"*", "#", " x", "*ptr\\", "#Const", "a * *b", ";", "\n", "\"", ""};
+        String code = corpus(LINES);
+        List<Token> tokens = lex(code, 0, 0, Integer.MAX_VALUE);
+        final Random random = new Random(3);
+        for (int edit = 0; edit < 40; edit++) {
+            final int offset = random.nextInt(code.length());
+            final int removed = Math.min(random.nextInt(4), code.length() - offset);
+            final String inserted = insertions[random.nextInt(insertions.length)];
+            final String edited = code.substring(0, offset) + inserted + code.substring(offset + removed);
+            final int delta = inserted.length() - removed;
+
+            // resume like the editor highlighter, at the token before the edit with its state
+            int first = 0;
+            while (first + 1 < tokens.size() && tokens.get(first + 1).start < offset) {
+                first++;
+            }
+            first = Math.max(0, first - 1);
+            final Map<Integer, Integer> unchanged = new HashMap<>();
+            for (int i = first; i < tokens.size(); i++) {
+                if (tokens.get(i).start >= offset + removed) {
+                    unchanged.put(tokens.get(i).start + delta, i);
+                }
+            }
+
+            final List<Token> result = new ArrayList<>(tokens.subList(0, first));
+            final PureBasicLexerAdapter lexer = new PureBasicLexerAdapter();
+            lexer.start(edited, tokens.get(first).start, edited.length(), tokens.get(first).state);
+            int relexed = 0;
+            while (lexer.getTokenType() != null) {
+                final Integer old = unchanged.get(lexer.getTokenStart());
+                if (old != null && lexer.getTokenStart() >= offset + inserted.length()
+                        && tokens.get(old).state == lexer.getState()) {
+                    for (int i = old; i < tokens.size(); i++) {
+                        result.add(tokens.get(i).shift(delta));
+                    }
+                    break;
+                }
+                result.add(new Token(lexer));
+                relexed++;
+                lexer.advance();
+            }
+
+            final List<Token> expected = lex(edited, 0, 0, Integer.MAX_VALUE);
+            assertEquals(expected, result);
+            assertTrue("relexed " + relexed + " tokens for an edit at " + offset, relexed <= MAX_RELEXED_TOKENS);
+            code = edited;
+            tokens = expected;
+        }
+    }
+
+    private static class Token {
+        final int start;
+        final int end;
+        final int state;
+        final IElementType type;
+
+        Token(PureBasicLexerAdapter lexer) {
+            this(lexer.getTokenStart(), lexer.getTokenEnd(), lexer.getState(), lexer.getTokenType());
+        }
+
+        Token(int start, int end, int state, IElementType type) {
+            this.start = start;
+            this.end = end;
+            this.state = state;
+            this.type = type;
+        }
+
+        Token shift(int delta) {
+            return new Token(start + delta, end + delta, state, type);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Token)) {
+                return false;
+            }
+            final Token token = (Token) o;
+            return start == token.start && end == token.end && state == token.state && type == token.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(start, end, state, type);
+        }
+
+        @Override
+        public String toString() {
+            return type + "@" + start + ".." + end + "/" + state;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.PsiBuilder;
+import com.intellij.lang.PsiBuilderFactory;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.impl.DebugUtil;
+import com.intellij.psi.impl.source.tree.LazyParseableElement;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.IReparseableElementType;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.ParsingTestCase;
+import eu.bradan.purebasic.psi.*;
+
+import java.util.Collection;
+
+public class TestPureBasicReparse extends ParsingTestCase {
+    private static final String CODE = "DeclareModule Api\n" +
+            "  Declare.i Run(*data)\n" +
+            "EndDeclareModule\n" +
+            "\n" +
+            "Module Api\n" +
+            "  Procedure.i Run(*data)\n" +
+            "    ProcedureReturn *data * 2\n" +
+            "  EndProcedure\n" +
+            "EndModule\n" +
+            "\n" +
+            "Macro Twice(x)\n" +
+            "  (x) * 2\n" +
+            "EndMacro\n" +
+            "\n" +
+            "Procedure Main()\n" +
+            "  Protected a.i = Twice(#PB_Any)\n" +
+            "EndProcedure\n";
+    private static final String DATA_SECTION = "DataSection ; generated\n" +
+            "  Palette:\n" +
+            "  Data.l $000000, $FFFFFF,\n" +
+            "         $FF0000\n" +
+            "  Names:\n" +
+            "  Data.s \"red\", \"green\"\n" +
+            "EndDataSection\n";
+
+    public TestPureBasicReparse() {
+        super("", "pb", new PureBasicParserDefinition());
+    }
+
+    private boolean isParsable(IElementType type, String text) {
+        return ((IReparseableElementType) type).isParsable(null, text, PureBasicLanguage.INSTANCE, getProject());
+    }
+
+    public void testIsParsable() {
+        assertTrue(isParsable(PureBasicTypes.PROCEDURE_BLOCK, "Procedure a()\n  x = 1 ; EndProcedure\nEndProcedure"));
+        assertTrue(isParsable(PureBasicTypes.PROCEDURE_BLOCK, "ProcedureC.i a()\nEndProcedure"));
+        assertFalse(isParsable(PureBasicTypes.PROCEDURE_BLOCK, "Procedure a()\n  x = 1"));
+        assertFalse(isParsable(PureBasicTypes.PROCEDURE_BLOCK, "x = 1\nEndProcedure"));
+        assertFalse(isParsable(PureBasicTypes.PROCEDURE_BLOCK, "Procedure a()\nEndProcedure\nx = 1"));
+        assertFalse(isParsable(PureBasicTypes.PROCEDURE_BLOCK,
+                "Procedure a()\nEndProcedure\nProcedure b()\nEndProcedure"));
+
+        assertTrue(isParsable(PureBasicTypes.MACRO_BLOCK, "Macro m()\n  Procedure\nEndMacro"));
+        assertTrue(isParsable(PureBasicTypes.DEFINE_MODULE_BLOCK,
+                "Module M\n  Procedure a()\n  EndProcedure\nEndModule"));
+        assertFalse(isParsable(PureBasicTypes.DEFINE_MODULE_BLOCK, "Module M\nEndModule\nModule N\nEndModule"));
+        assertTrue(isParsable(PureBasicTypes.DECLARE_MODULE_BLOCK, "DeclareModule M\nEndDeclareModule"));
+        assertFalse(isParsable(PureBasicTypes.DECLARE_MODULE_BLOCK, "DeclareModule M\nEndModule"));
+    }
+
+    public void testBlocksParseOnTheirOwn() {
+        final PsiFile file = createPsiFile("reparse", CODE);
+        final Collection<PsiElement> blocks = PsiTreeUtil.findChildrenOfAnyType(file,
+                PureBasicProcedureBlock.class, PureBasicMacroBlock.class,
+                PureBasicDeclareModuleBlock.class, PureBasicDefineModuleBlock.class);
+        assertEquals(5, blocks.size());
+
+        for (PsiElement block : blocks) {
+            final ASTNode node = block.getNode();
+            assertTrue(isParsable(node.getElementType(), block.getText()));
+
+            final PsiBuilder builder = PsiBuilderFactory.getInstance().createBuilder(new PureBasicParserDefinition(),
+                    new PureBasicLexerAdapter(), block.getText());
+            final ASTNode reparsed = new PureBasicParser().parse(node.getElementType(), builder);
+            assertEquals(DebugUtil.treeToString(node, false), DebugUtil.treeToString(reparsed, false));
+        }
+    }
+
+    public void testDataSectionBodyIsParsable() {
+        assertTrue(isParsable(PureBasicTypes.DATA_SECTION_BODY, "\n  Data.b 1, 2\n"));
+        assertTrue(isParsable(PureBasicTypes.DATA_SECTION_BODY, ":Data.b 1:  "));
+        assertFalse(isParsable(PureBasicTypes.DATA_SECTION_BODY, "  Data.b 1\n"));
+        assertFalse(isParsable(PureBasicTypes.DATA_SECTION_BODY, "\n  Data.b 1"));
+        assertFalse(isParsable(PureBasicTypes.DATA_SECTION_BODY, "\nEndDataSection\nx = 1\n"));
+        assertFalse(isParsable(PureBasicTypes.DATA_SECTION_BODY, "\nDataSection\n"));
+    }
+
+    public void testDataSectionBodyIsParsedLazily() {
+        final PsiFile file = createPsiFile("lazy", DATA_SECTION);
+        final PureBasicDataSectionBody body = PsiTreeUtil.findChildOfType(file, PureBasicDataSectionBody.class);
+        assertNotNull(body);
+        final LazyParseableElement node = (LazyParseableElement) body.getNode();
+        assertFalse(node.isParsed());
+        assertEquals(DATA_SECTION.indexOf('\n'), node.getTextRange().getStartOffset());
+
+        final PsiBuilder builder = PsiBuilderFactory.getInstance().createBuilder(new PureBasicParserDefinition(),
+                new PureBasicLexerAdapter(), body.getText());
+        final ASTNode parsed = new PureBasicParser().parse(PureBasicTypes.DATA_SECTION_BODY, builder);
+        assertEquals(DebugUtil.treeToString(parsed, false), DebugUtil.treeToString(node, false));
+        assertTrue(node.isParsed());
+        assertEquals(2, PsiTreeUtil.findChildrenOfType(body, PureBasicLabelStmt.class).size());
+        assertEquals(2, PsiTreeUtil.findChildrenOfType(body, PureBasicDataListStmt.class).size());
+    }
+
+    public void testUnterminatedDataSectionIsParsedRightAway() {
+        final PsiFile file = createPsiFile("unterminated", "DataSection\n  Data.b 1\n");
+        final PureBasicDataSectionBody body = PsiTreeUtil.findChildOfType(file, PureBasicDataSectionBody.class);
+        assertNotNull(body);
+        assertTrue(((LazyParseableElement) body.getNode()).isParsed());
+    }
+
+    public void testUnterminatedDataSectionKeepsTheNextOne() {
+        final String text = "DataSection\n  Data.b 1\n" + DATA_SECTION;
+        final PsiFile file = createPsiFile("unterminated", text);
+        final PureBasicDataSectionBody body = PsiTreeUtil.findChildOfType(file, PureBasicDataSectionBody.class);
+        assertNotNull(body);
+        assertTrue(((LazyParseableElement) body.getNode()).isParsed());
+
+        final PsiElement head = file.findElementAt(text.lastIndexOf("DataSection"));
+        assertNotNull(head);
+        final PureBasicDataSectionBlock next = PsiTreeUtil.getParentOfType(head, PureBasicDataSectionBlock.class);
+        assertNotNull(next);
+        assertNotNull(next.getDataSectionFoot());
+        final LazyParseableElement nextBody =
+                (LazyParseableElement) next.getNode().findChildByType(PureBasicTypes.DATA_SECTION_BODY);
+        assertNotNull(nextBody);
+        assertFalse(nextBody.isParsed());
+    }
+
+    @Override
+    protected String getTestDataPath() {
+        return "src/test/testData";
+    }
+}
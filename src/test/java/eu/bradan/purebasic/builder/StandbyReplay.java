@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Stand-in for a compiler in standby mode. It replays a recorded session: the lines before the first request are
+ * printed on start up, every "> request" line is followed by the recorded response up to OUTPUT\tCOMPLETE.
+ */
+public class StandbyReplay {
+    public static void main(String[] args) throws IOException {
+        final List<String> greeting = new ArrayList<>();
+        final HashMap<String, List<String>> responses = new HashMap<>();
+
+        List<String> current = greeting;
+        for (String line : Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            if (line.startsWith("> ")) {
+                current = new ArrayList<>();
+                responses.put(line.substring(2), current);
+            } else {
+                current.add(line);
+            }
+        }
+
+        final BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out));
+        write(out, greeting);
+
+        String request;
+        while ((request = in.readLine()) != null && !"END".equals(request)) {
+            final List<String> response = responses.get(request);
+            if (response != null) {
+                write(out, response);
+            } else {
+                out.write(PureBasicCompilerDaemon.OUTPUT_COMPLETE);
+                out.newLine();
+                out.flush();
+            }
+        }
+    }
+
+    private static void write(BufferedWriter out, List<String> lines) throws IOException {
+        for (String line : lines) {
+            out.write(line);
+            out.newLine();
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestCompileDiagnostics extends TestCase {
+    public void testMessagesAreIndexedByFile() {
+        final File dir = new File(System.getProperty("java.io.tmpdir"), "diagnostics");
+        final String main = new File(dir, "main.pb").getPath();
+        final String include = new File(dir, "lib/include.pbi").getPath();
+
+        final CompileSession session = new CompileSession("test", CompileMessageStore.DEFAULT_CAPACITY);
+        session.addLine("PureBasic 5.72");
+        session.addMessages(Arrays.asList(
+                new CompileMessage(CompileMessage.CompileMessageType.ERROR, "Line 3 - Syntax error.", include, 3),
+                new CompileMessage(CompileMessage.CompileMessageType.ERROR, "Line 12 - Bad parameter.", main, 12),
+                new CompileMessage(CompileMessage.CompileMessageType.ERROR, "Line 7 - Garbage.", include, 7)));
+
+        final CompileDiagnostics diagnostics = session.getDiagnostics();
+        assertEquals(Arrays.asList(CompileDiagnostics.toKey(include), CompileDiagnostics.toKey(main)),
+                diagnostics.getFiles());
+
+        // the path is normalized, so the file is found no matter how the compiler spelled it
+        final List<CompileMessage> messages = diagnostics.getMessages(new File(dir, "lib/../lib/include.pbi").getPath());
+        assertEquals(2, messages.size());
+        assertEquals(3, messages.get(0).line);
+        assertEquals("Syntax error.", messages.get(0).getDescription());
+        assertEquals(7, messages.get(1).line);
+        assertTrue(diagnostics.getMessages(new File(dir, "other.pb").getPath()).isEmpty());
+
+        // a target without warnings or errors counts as compiled
+        session.finishTarget("m/app", Collections.emptyList());
+        assertEquals(Collections.singleton("m/app"), diagnostics.getTargets());
+
+        session.clear();
+        assertTrue(diagnostics.isEmpty());
+        assertTrue(diagnostics.getTargets().isEmpty());
+    }
+
+    public void testKeyUsesForwardSlashes() {
+        assertEquals(-1, CompileDiagnostics.toKey("C:\\pb\\main.pb").indexOf('\\'));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestCompileDiagnosticsHistory extends TestCase {
+    private static CompileMessage error(String description, String file, int line) {
+        return new CompileMessage(CompileMessage.CompileMessageType.ERROR, "Line " + line + " - " + description,
+                file, line);
+    }
+
+    private static CompileDiagnostics build(Object... targetsAndMessages) {
+        final CompileDiagnostics diagnostics = new CompileDiagnostics();
+        for (int i = 0; i < targetsAndMessages.length; i += 2) {
+            //noinspection unchecked
+            diagnostics.addTarget((String) targetsAndMessages[i], (List<CompileMessage>) targetsAndMessages[i + 1]);
+        }
+        return diagnostics;
+    }
+
+    public void testBuildsAreCompared() {
+        final CompileDiagnosticsHistory history = new CompileDiagnosticsHistory();
+        final CompileMessage a = error("Syntax error.", "main.pb", 3);
+        final CompileMessage b = error("Bad parameter.", "main.pb", 10);
+        final CompileMessage c = error("Garbage.", "lib.pbi", 1);
+
+        history.append(build("m/app", Arrays.asList(a, b), "m/lib", Collections.singletonList(c)));
+
+        // b moved down, a is fixed and the second target is up to date
+        final CompileMessage movedB = error("Bad parameter.", "main.pb", 12);
+        final CompileMessage d = error("Unknown procedure.", "main.pb", 20);
+        CompileDiagnosticsDiff diff = history.append(build("m/app", Arrays.asList(movedB, d)));
+        assertEquals(Collections.singletonList(d), diff.getMessages(CompileDiagnosticsDiff.Change.NEW));
+        assertEquals(Collections.singletonList(a), diff.getMessages(CompileDiagnosticsDiff.Change.FIXED));
+        assertEquals(Collections.singletonList(movedB), diff.getMessages(CompileDiagnosticsDiff.Change.UNCHANGED));
+        assertTrue(diff.isNew(error("Unknown procedure.", "main.pb", 20)));
+        assertFalse(diff.isNew(b));
+
+        // the up to date target kept its diagnostics
+        diff = history.append(build("m/lib", Collections.emptyList()));
+        assertEquals(Collections.singletonList(c), diff.getMessages(CompileDiagnosticsDiff.Change.FIXED));
+        assertTrue(diff.getMessages(CompileDiagnosticsDiff.Change.NEW).isEmpty());
+    }
+
+    public void testMessagesOfFilesAreMergedPerTarget() {
+        final CompileDiagnosticsHistory history = new CompileDiagnosticsHistory();
+        final CompileMessage a = error("Syntax error.", "main.pb", 3);
+        final CompileMessage c = error("Garbage.", "lib.pbi", 1);
+        history.append(build("m/app", Arrays.asList(a, c), "m/lib", Collections.singletonList(c)));
+        assertEquals(Collections.singletonList(c), history.getMessages("lib.pbi"));
+
+        // the library is up to date, so its error stays although the application doesn't include it anymore
+        final CompileMessage b = error("Bad parameter.", "main.pb", 10);
+        history.append(build("m/app", Collections.singletonList(b)));
+        assertEquals(Collections.singletonList(b), history.getMessages("main.pb"));
+        assertEquals(Collections.singletonList(c), history.getMessages("lib.pbi"));
+
+        history.append(build("m/lib", Collections.emptyList()));
+        assertTrue(history.getMessages("lib.pbi").isEmpty());
+    }
+
+    public void testHistoryIsBounded() {
+        final CompileDiagnosticsHistory history = new CompileDiagnosticsHistory();
+        for (int i = 0; i < 3 * CompileDiagnosticsHistory.MAX_BUILDS; i++) {
+            history.append(build("m/app", Collections.singletonList(error("Error " + i, "main.pb", i + 1))));
+        }
+        assertEquals(CompileDiagnosticsHistory.MAX_BUILDS, history.size());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.util.List;
+
+public class TestCompileLog extends BasePlatformTestCase {
+    private CompileLog log;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // not the project service, the light project and its services are shared by the tests
+        log = new CompileLog(getProject());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            log.dispose();
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    private CompileSession start(String title, boolean replaceable) {
+        return log.startSession(title, CompileMessageStore.DEFAULT_CAPACITY, replaceable);
+    }
+
+    public void testReplaceableSessionsKeepTheHistory() {
+        final CompileSession build = start("build", false);
+        log.finishSession(build);
+
+        for (int i = 0; i < 2 * CompileLog.MAX_SESSIONS; i++) {
+            log.finishSession(start("on save " + i, true));
+        }
+        final List<CompileSession> sessions = log.getSessions();
+        assertEquals(2, sessions.size());
+        assertSame(build, sessions.get(0));
+        assertEquals("on save " + (2 * CompileLog.MAX_SESSIONS - 1), sessions.get(1).getTitle());
+    }
+
+    public void testRunningSessionsAreNotReplaced() {
+        final CompileSession running = start("running", true);
+        final CompileSession next = start("next", true);
+        assertEquals(List.of(running, next), log.getSessions());
+
+        log.finishSession(running);
+        log.finishSession(next);
+        final CompileSession last = start("last", true);
+        assertEquals(List.of(last), log.getSessions());
+    }
+
+    public void testOtherSessionsAreNotReplaced() {
+        log.finishSession(start("on save", true));
+        final CompileSession build = start("build", false);
+        log.finishSession(build);
+        assertEquals(2, log.getSessions().size());
+        assertSame(build, log.getCurrentSession());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import junit.framework.TestCase;
+
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.List;
+
+public class TestCompileLogIndex extends TestCase {
+    private static final EnumSet<CompileMessage.CompileMessageType> ALL_TYPES =
+            EnumSet.allOf(CompileMessage.CompileMessageType.class);
+
+    public void testQueries() {
+        final CompileLogIndex index = new CompileLogIndex();
+        index.add(new CompileMessage(CompileMessage.CompileMessageType.INFO, "Compiling target app", null, -1), null);
+        index.add(new CompileMessage(CompileMessage.CompileMessageType.ERROR, "Line 3 - Syntax error.",
+                "main.pb", 3), "m/app");
+        index.add(new CompileMessage(CompileMessage.CompileMessageType.WARN, "Line 9 - Unused variable.",
+                "lib.pbi", 9), "m/app");
+        index.add(new CompileMessage(CompileMessage.CompileMessageType.ERROR, "Line 1 - Syntax error.",
+                "lib.pbi", 1), "m/lib");
+
+        assertEquals(bits(1, 3), index.find(new CompileLogIndex.Query("synt", ALL_TYPES, null, null)));
+        assertEquals(bits(1, 3), index.find(new CompileLogIndex.Query("ERROR syntax", ALL_TYPES, null, null)));
+        assertEquals(bits(), index.find(new CompileLogIndex.Query("syntax variable", ALL_TYPES, null, null)));
+        assertEquals(bits(2), index.find(new CompileLogIndex.Query("",
+                EnumSet.of(CompileMessage.CompileMessageType.WARN), null, null)));
+        assertEquals(bits(2, 3), index.find(new CompileLogIndex.Query("", ALL_TYPES,
+                CompileDiagnostics.toKey("lib.pbi"), null)));
+        assertEquals(bits(3), index.find(new CompileLogIndex.Query("syntax", ALL_TYPES, null, "m/lib")));
+        assertTrue(new CompileLogIndex.Query(" ", ALL_TYPES, null, null).isEmpty());
+
+        // a range is matched relative to its start
+        assertEquals(bits(0, 2), index.find(new CompileLogIndex.Query("syntax", ALL_TYPES, null, null), 1, 4));
+        assertEquals(bits(0), index.find(new CompileLogIndex.Query("", EnumSet.of(
+                CompileMessage.CompileMessageType.ERROR), CompileDiagnostics.toKey("lib.pbi"), "m/lib"), 3, 10));
+        assertEquals(bits(), index.find(new CompileLogIndex.Query("syntax", ALL_TYPES, null, null), 2, 3));
+
+        index.clear();
+        assertEquals(bits(), index.find(new CompileLogIndex.Query("syntax", ALL_TYPES, null, null)));
+    }
+
+    public void testViewFollowsSession() throws Exception {
+        final CompileSession session = new CompileSession("test", CompileMessageStore.DEFAULT_CAPACITY);
+        final List<CompileMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 200000; i++) {
+            messages.add(new CompileMessage(i % 1000 == 0 ? CompileMessage.CompileMessageType.ERROR
+                    : CompileMessage.CompileMessageType.INFO, "Line " + i + " - message number " + i, null, -1));
+        }
+        session.addMessages("m/app", messages);
+        TestCompileSession.waitForFlush(session);
+
+        EventQueue.invokeAndWait(() -> {
+            final CompileSessionView view = new CompileSessionView(session);
+            assertEquals(200000, view.getSize());
+
+            view.setQuery(new CompileLogIndex.Query("message", EnumSet.of(CompileMessage.CompileMessageType.ERROR),
+                    null, "m/app"));
+            assertEquals(200, view.getSize());
+            assertEquals("Line 1000 - message number 1000", view.getElementAt(1).message);
+
+            // words match by prefix
+            view.setQuery(new CompileLogIndex.Query("12345", ALL_TYPES, null, null));
+            assertEquals(11, view.getSize());
+            view.setQuery(new CompileLogIndex.Query("199999", ALL_TYPES, null, null));
+            assertEquals(1, view.getSize());
+
+            view.setQuery(null);
+            assertEquals(200000, view.getSize());
+            view.dispose();
+        });
+
+        // appended messages are matched on their own
+        final List<String> events = new ArrayList<>();
+        final CompileSessionView[] view = new CompileSessionView[1];
+        EventQueue.invokeAndWait(() -> {
+            view[0] = new CompileSessionView(session);
+            view[0].setQuery(new CompileLogIndex.Query("", EnumSet.of(CompileMessage.CompileMessageType.ERROR),
+                    null, null));
+            view[0].addListDataListener(new ListDataListener() {
+                @Override
+                public void intervalAdded(ListDataEvent e) {
+                    events.add("added " + e.getIndex0() + "-" + e.getIndex1());
+                }
+
+                @Override
+                public void intervalRemoved(ListDataEvent e) {
+                    events.add("removed " + e.getIndex0() + "-" + e.getIndex1());
+                }
+
+                @Override
+                public void contentsChanged(ListDataEvent e) {
+                    events.add("changed " + e.getIndex0() + "-" + e.getIndex1());
+                }
+            });
+        });
+        session.addMessage(new CompileMessage(CompileMessage.CompileMessageType.ERROR, "Line 1 - late", null, -1));
+        session.addLine("not an error");
+        TestCompileSession.waitForFlush(session);
+
+        EventQueue.invokeAndWait(() -> {
+            assertEquals(201, view[0].getSize());
+            assertEquals("Line 1 - late", view[0].getElementAt(200).message);
+            view[0].setQuery(new CompileLogIndex.Query("late", ALL_TYPES, null, null));
+            assertEquals(1, view[0].getSize());
+            view[0].setQuery(null);
+            assertEquals(200002, view[0].getSize());
+            assertEquals(Arrays.asList("added 200-200", "changed 0-0", "removed 1-200", "changed 0-0",
+                    "added 1-200001"), events);
+            view[0].dispose();
+        });
+        session.dispose();
+    }
+
+    private static BitSet bits(int... positions) {
+        final BitSet bits = new BitSet();
+        for (int position : positions) {
+            bits.set(position);
+        }
+        return bits;
+    }
+}
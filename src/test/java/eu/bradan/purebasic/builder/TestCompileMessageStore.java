@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class TestCompileMessageStore extends TestCase {
+    private CompileMessageStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        store = new CompileMessageStore(100);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        store.dispose();
+    }
+
+    private static CompileMessage message(int i) {
+        if (i % 7 == 0) {
+            return new CompileMessage(CompileMessage.CompileMessageType.ERROR, "Line " + i + " - Syntax error \u00e4",
+                    "/tmp/file" + i + ".pb", i);
+        }
+        return new CompileMessage(CompileMessage.CompileMessageType.INFO, "output " + i, null, -1);
+    }
+
+    private void assertMessage(int i) {
+        final CompileMessage expected = message(i);
+        final CompileMessage actual = store.get(i);
+        assertEquals(expected.type, actual.type);
+        assertEquals(expected.message, actual.message);
+        assertEquals(expected.file, actual.file);
+        assertEquals(expected.line, actual.line);
+    }
+
+    public void testSpilledMessagesAreReadBack() {
+        final int count = 50000;
+        for (int i = 0; i < count; i++) {
+            store.add(message(i));
+        }
+        assertEquals(count, store.size());
+
+        // scrolling up from the end, then random access
+        for (int i = count - 1; i >= 0; i--) {
+            assertMessage(i);
+        }
+        final Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            assertMessage(random.nextInt(count));
+        }
+    }
+
+    public void testLongMessages() {
+        final String text = "x".repeat(3 * 1024 * 1024);
+        store.add(new CompileMessage(CompileMessage.CompileMessageType.INFO, text, null, -1));
+        for (int i = 1; i <= 200; i++) {
+            store.add(message(i));
+        }
+        assertEquals(text, store.get(0).message);
+        assertMessage(150);
+    }
+
+    public void testClear() {
+        for (int i = 0; i < 1000; i++) {
+            store.add(message(i));
+        }
+        store.clear();
+        assertEquals(0, store.size());
+
+        for (int i = 0; i < 500; i++) {
+            store.add(message(i));
+        }
+        assertEquals(500, store.size());
+        for (int i = 0; i < 500; i++) {
+            assertMessage(i);
+        }
+    }
+
+    public void testSmallCapacity() {
+        store.dispose();
+        store = new CompileMessageStore(10);
+        for (int i = 0; i < 500; i++) {
+            store.add(message(i));
+        }
+        assertEquals(10, store.getCapacity());
+        assertEquals(500, store.size());
+        for (int i = 0; i < 500; i++) {
+            assertMessage(i);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import junit.framework.TestCase;
+
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestCompileSession extends TestCase {
+    private static final int THREADS = 4;
+    private static final int BLOCKS = 250;
+    private static final int BLOCK_SIZE = 100;
+
+    static void waitForFlush(CompileSession session) throws Exception {
+        do {
+            Thread.sleep(CompileSession.FLUSH_INTERVAL_MS);
+        } while (session.isFlushScheduled());
+        EventQueue.invokeAndWait(() -> {
+        });
+    }
+
+    public void testConcurrentBlocksAreCoalesced() throws Exception {
+        final CompileSession log = new CompileSession("test", CompileMessageStore.DEFAULT_CAPACITY);
+        final AtomicInteger events = new AtomicInteger();
+        log.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                assertTrue(EventQueue.isDispatchThread());
+                events.incrementAndGet();
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+                events.incrementAndGet();
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+                events.incrementAndGet();
+            }
+        });
+
+        final ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final String prefix = "thread " + t;
+            threads.add(new Thread(() -> {
+                for (int b = 0; b < BLOCKS; b++) {
+                    final ArrayList<CompileMessage> block = new ArrayList<>();
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        block.add(new CompileMessage(CompileMessage.CompileMessageType.INFO,
+                                prefix + " block " + b + " line " + i, null, -1));
+                    }
+                    log.addMessages(block);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        waitForFlush(log);
+
+        final List<CompileMessage> messages = new ArrayList<>();
+        EventQueue.invokeAndWait(() -> {
+            for (int i = 0; i < log.getSize(); i++) {
+                messages.add(log.getElementAt(i));
+            }
+        });
+        assertEquals(THREADS * BLOCKS * BLOCK_SIZE, messages.size());
+        assertTrue(events.get() < THREADS * BLOCKS);
+
+        // every block has to be contiguous
+        for (int i = 0; i < messages.size(); i += BLOCK_SIZE) {
+            final String first = messages.get(i).message;
+            final String block = first.substring(0, first.lastIndexOf(" line "));
+            for (int j = 0; j < BLOCK_SIZE; j++) {
+                assertEquals(block + " line " + j, messages.get(i + j).message);
+            }
+        }
+    }
+
+    public void testLargeBatchesAreSplit() throws Exception {
+        final CompileSession log = new CompileSession("test", CompileMessageStore.DEFAULT_CAPACITY);
+        final List<Integer> added = new ArrayList<>();
+        log.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                added.add(e.getIndex1() - e.getIndex0() + 1);
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+            }
+        });
+
+        final ArrayList<CompileMessage> block = new ArrayList<>();
+        for (int i = 0; i < 3 * CompileSession.MAX_FLUSH_MESSAGES + 1; i++) {
+            block.add(new CompileMessage(CompileMessage.CompileMessageType.INFO, "line " + i, null, -1));
+        }
+        log.addMessages(block);
+        waitForFlush(log);
+
+        EventQueue.invokeAndWait(() -> {
+            assertEquals(block.size(), log.getSize());
+            assertEquals(4, added.size());
+            for (int count : added) {
+                assertTrue(count <= CompileSession.MAX_FLUSH_MESSAGES);
+            }
+        });
+    }
+
+    public void testClearKeepsLaterMessages() throws Exception {
+        final CompileSession log = new CompileSession("test", CompileMessageStore.DEFAULT_CAPACITY);
+        log.addLine("old");
+        waitForFlush(log);
+        log.addLine("dropped");
+        log.clear();
+        log.addLine("new");
+        waitForFlush(log);
+
+        EventQueue.invokeAndWait(() -> {
+            assertEquals(1, log.getSize());
+            assertEquals("new", log.getElementAt(0).message);
+        });
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class TestPureBasicBuildCache extends TestCase {
+    private Path dir;
+    private File output;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("pbbuildcache");
+        output = dir.resolve("out/program").toFile();
+        Files.createDirectories(output.toPath().getParent());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted((a, b) -> b.compareTo(a)).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private void writeOutput(String content) throws IOException {
+        Files.write(output.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String readOutput() throws IOException {
+        return new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+    }
+
+    public void testRestore() throws IOException {
+        final PureBasicBuildCache cache = new PureBasicBuildCache(dir.resolve("cache"), 1024);
+        final List<File> outputs = Collections.singletonList(output);
+
+        assertFalse(cache.restore("a", outputs));
+
+        writeOutput("build a");
+        cache.store("a", outputs);
+        writeOutput("build b");
+        cache.store("b", outputs);
+
+        assertTrue(cache.restore("a", outputs));
+        assertEquals("build a", readOutput());
+        assertTrue(cache.restore("b", outputs));
+        assertEquals("build b", readOutput());
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws IOException {
+        final PureBasicBuildCache cache = new PureBasicBuildCache(dir.resolve("cache"), 250);
+        final List<File> outputs = Collections.singletonList(output);
+        final String content = "x".repeat(100);
+
+        writeOutput(content);
+        cache.store("a", outputs);
+        cache.store("b", outputs);
+        Files.setLastModifiedTime(dir.resolve("cache/a"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(dir.resolve("cache/b"), FileTime.fromMillis(2000));
+
+        // a is older than b, but has just been used
+        assertTrue(cache.restore("a", outputs));
+        cache.store("c", outputs);
+
+        assertTrue(cache.restore("a", outputs));
+        assertFalse(cache.restore("b", outputs));
+        assertTrue(cache.restore("c", outputs));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package eu.bradan.purebasic.builder;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import eu.bradan.purebasic.module.PureBasicTargetSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+public class TestPureBasicBuildScheduler extends BasePlatformTestCase {
+    private static final String SDK_LABEL = "scheduler-test";
+    // reports the version, and writes the output like pbcompiler -e <output> <input> does, slowly enough for
+    // builds to overlap
+    private static final String COMPILER = "#!/bin/sh\n" +
+            "if [ \"$1\" = \"--version\" ]; then\n" +
+            "  echo \"PureBasic 6.04 LTS (Linux - x64)\"\n" +
+            "elif [ \"$1\" = \"-e\" ]; then\n" +
+            "  echo \"Compiling $3\"\n" +
+            "  sleep 1\n" +
+            "  cp \"$3\" \"$2\"\n" +
+            "fi\n";
+
+    private Path dir;
+    private PureBasicCompiler sdk;
+    private PureBasicTargetSettings target;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("pbscheduler");
+        final Path compiler = dir.resolve("sdk/compilers/pbcompiler");
+        Files.createDirectories(compiler.getParent());
+        Files.write(compiler, COMPILER.getBytes(StandardCharsets.UTF_8));
+        assertTrue(compiler.toFile().setExecutable(true));
+        sdk = PureBasicCompiler.getOrLoadCompilerByHome(dir.resolve("sdk").toString());
+        assertNotNull(sdk);
+        sdk.setLabels(SDK_LABEL);
+
+        // unique, so the output isn't restored from the build cache of an earlier run
+        Files.write(dir.resolve("main.pb"), ("Debug " + System.nanoTime() + "\n").getBytes(StandardCharsets.UTF_8));
+        target = new PureBasicTargetSettings("main");
+        target.setSdkLabel(SDK_LABEL);
+        target.setInputFile("main.pb");
+        target.setOutputFile("main");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        // the SDK of the next test gets the label
+        if (sdk != null) {
+            sdk.setLabels("");
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted((a, b) -> b.compareTo(a)).map(Path::toFile).forEach(File::delete);
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    private PureBasicBuildMetrics build() {
+        final CompileLog log = CompileLog.getInstance(getProject());
+        final CompileSession session = log.startSession("test", CompileMessageStore.DEFAULT_CAPACITY);
+        final PureBasicBuildMetrics metrics = new PureBasicBuildMetrics();
+        final PureBasicBuildScheduler scheduler = new PureBasicBuildScheduler(2, 0, new EmptyProgressIndicator(),
+                session, metrics);
+        scheduler.addTarget(getModule(), dir.toString(), target);
+        assertTrue(scheduler.run());
+        log.finishMetrics(metrics);
+        log.finishSession(session);
+        return metrics;
+    }
+
+    public void testPhasesAreRecorded() throws IOException {
+        if (SystemInfo.isWindows) {
+            // the compiler is a shell script
+            return;
+        }
+        final List<PureBasicBuildMetrics> published = new ArrayList<>();
+        getProject().getMessageBus().connect(getTestRootDisposable())
+                .subscribe(PureBasicBuildMetrics.TOPIC, published::add);
+
+        final PureBasicBuildMetrics compiled = build();
+        assertTrue(Files.exists(dir.resolve("main")));
+        assertTrue(compiled.getTotalMillis() >= 0);
+        assertTrue(compiled.getNanos(PureBasicBuildMetrics.Phase.FINGERPRINT) > 0);
+        assertTrue(compiled.getNanos(PureBasicBuildMetrics.Phase.SPAWN) > 0);
+        assertTrue(compiled.getNanos(PureBasicBuildMetrics.Phase.COMPILE) > 0);
+        assertEquals(0, compiled.getNanos(PureBasicBuildMetrics.Phase.SAVE));
+
+        // nothing changed, so the compiler isn't started again
+        final PureBasicBuildMetrics upToDate = build();
+        assertTrue(upToDate.getNanos(PureBasicBuildMetrics.Phase.FINGERPRINT) > 0);
+        assertEquals(0, upToDate.getNanos(PureBasicBuildMetrics.Phase.SPAWN));
+        assertEquals(0, upToDate.getNanos(PureBasicBuildMetrics.Phase.COMPILE));
+
+        assertEquals(List.of(compiled, upToDate), published);
+        assertSame(upToDate, CompileLog.getInstance(getProject()).getLastMetrics());
+    }
+
+    public void testConcurrentBuildsOfAnOutputAreSerialized() throws Exception {
+        if (SystemInfo.isWindows) {
+            // the compiler is a shell script
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<PureBasicBuildMetrics> first = executor.submit(this::build);
+            final Future<PureBasicBuildMetrics> second = executor.submit(this::build);
+
+            // the build which waited finds the output of the other one up to date
+            int compiled = 0;
+            for (Future<PureBasicBuildMetrics> build : List.of(first, second)) {
+                if (build.get().getNanos(PureBasicBuildMetrics.Phase.SPAWN) > 0) {
+                    compiled++;
+                }
+            }
+            assertEquals(1, compiled);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+public class TestPureBasicCompilerDaemon extends TestCase {
+    private static final String SESSION = "src/test/testData/standby/session.txt";
+    private static final String CHECK_SESSION = "src/test/testData/standby/check.txt";
+    private static final int ROUNDS = 40;
+
+    private PureBasicCompilerDaemon daemon;
+
+    @Override
+    protected void setUp() throws Exception {
+        daemon = new PureBasicCompilerDaemon(replay(SESSION));
+    }
+
+    private static Process replay(String session) {
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        try {
+            return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    StandbyReplay.class.getName(), session).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        daemon.close();
+    }
+
+    private List<String> repeat(List<String> names) {
+        final ArrayList<String> result = new ArrayList<>();
+        for (int i = 0; i < ROUNDS; i++) {
+            result.addAll(names);
+        }
+        return result;
+    }
+
+    private List<List<String>> querySequential(String command, List<String> names) throws IOException {
+        final ArrayList<List<String>> result = new ArrayList<>();
+        for (String name : names) {
+            result.add(daemon.query(command + "\t" + name));
+        }
+        return result;
+    }
+
+    private List<List<String>> queryPipelined(String command, List<String> names) throws IOException {
+        final ArrayList<List<String>> result = new ArrayList<>();
+        daemon.queryPipelined(command, names, (name, response) -> result.add(response));
+        return result;
+    }
+
+    public void testResponsesKeepTheirOrder() throws IOException {
+        final LinkedHashMap<String, List<String>> structures = new LinkedHashMap<>();
+        daemon.queryPipelined("STRUCTURE", daemon.queryList("STRUCTURELIST"), structures::put);
+
+        assertEquals(25, structures.size());
+        assertEquals(List.of("x.l", "y.l"), structures.get("POINT"));
+        assertEquals(List.of("Date.Date", "Hour.b", "Minute.b", "Second.b"), structures.get("DateTime"));
+        assertEquals(List.of("s.s"), structures.get("String"));
+    }
+
+    public void testPipelinedMatchesSequential() throws IOException {
+        final List<String> structures = repeat(daemon.queryList("STRUCTURELIST"));
+        final List<String> interfaces = repeat(daemon.queryList("INTERFACELIST"));
+
+        final List<List<String>> sequential = querySequential("STRUCTURE", structures);
+        sequential.addAll(querySequential("INTERFACE", interfaces));
+
+        final List<List<String>> pipelined = queryPipelined("STRUCTURE", structures);
+        pipelined.addAll(queryPipelined("INTERFACE", interfaces));
+
+        assertEquals(sequential, pipelined);
+
+        // the daemon must still be usable afterwards
+        assertEquals(5, daemon.queryList("FUNCTIONLIST").size());
+    }
+
+    public void testCheck() throws IOException {
+        try (PureBasicCompilerDaemon checker = new PureBasicCompilerDaemon(replay(CHECK_SESSION))) {
+            final File main = new File("/tmp/main.pb");
+            for (int i = 0; i < 2; i++) {
+                final List<CompileMessage> messages = new ArrayList<>();
+                assertFalse(checker.check(main, messages::add));
+
+                assertEquals(2, messages.size());
+                assertEquals(CompileMessage.CompileMessageType.WARN, messages.get(0).type);
+                assertEquals("/tmp/include.pbi", messages.get(0).file);
+                assertEquals(3, messages.get(0).line);
+                assertEquals("Unused variable.", messages.get(0).getDescription());
+                assertEquals(CompileMessage.CompileMessageType.ERROR, messages.get(1).type);
+                assertEquals(main.toString(), messages.get(1).file);
+                assertEquals(12, messages.get(1).line);
+                assertEquals("Syntax error.", messages.get(1).getDescription());
+            }
+        }
+    }
+
+    public void testReleaseAfterClearClosesTheDaemon() throws IOException {
+        final PureBasicCompilerDaemonPool pool = new PureBasicCompilerDaemonPool(() -> replay(SESSION));
+        try {
+            final PureBasicCompilerDaemon first = pool.acquire();
+            pool.release(first);
+            assertSame(first, pool.acquire());
+
+            pool.clear();
+            pool.release(first);
+            assertFalse(first.isAlive());
+            final PureBasicCompilerDaemon second = pool.acquire();
+            assertNotSame(first, second);
+            pool.release(second);
+        } finally {
+            pool.clear();
+        }
+    }
+}
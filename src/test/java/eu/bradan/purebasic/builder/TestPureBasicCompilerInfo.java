@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+public class TestPureBasicCompilerInfo extends TestCase {
+    private Path sdk;
+    private PureBasicCompilerInfo info;
+
+    @Override
+    protected void setUp() throws Exception {
+        sdk = Files.createTempDirectory("pbinfo");
+        write(sdk.resolve("compilers/pbcompiler"), "compiler");
+        write(sdk.resolve("residents/PureBasic.res"), "resident 1");
+        info = PureBasicCompilerInfo.create("PureBasic 6.04 LTS (Linux - x64)",
+                sdk.resolve("compilers/pbcompiler").toFile());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(sdk)) {
+            files.sorted((a, b) -> b.compareTo(a)).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void testIdentityFollowsTheResidents() throws IOException {
+        final String identity = info.getIdentity();
+        assertNotNull(identity);
+        assertEquals(identity, info.getIdentity());
+
+        final Path resident = sdk.resolve("residents/PureBasic.res");
+        write(resident, "resident 2");
+        Files.setLastModifiedTime(resident, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        final String changed = info.getIdentity();
+        assertFalse(identity.equals(changed));
+
+        write(sdk.resolve("residents/Custom.res"), "custom");
+        final String added = info.getIdentity();
+        assertFalse(changed.equals(added));
+
+        Files.delete(sdk.resolve("residents/Custom.res"));
+        assertEquals(changed, info.getIdentity());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestPureBasicIncludeScanner extends TestCase {
+    private Path dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("pbinclude");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.walk(dir).sorted((a, b) -> b.compareTo(a)).map(Path::toFile).forEach(File::delete);
+    }
+
+    private File write(String name, String... lines) throws IOException {
+        final Path path = dir.resolve(name);
+        Files.createDirectories(path.getParent());
+        Files.write(path, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return path.toFile();
+    }
+
+    public void testTransitiveIncludes() throws IOException {
+        final File main = write("main.pb",
+                "; IncludeFile \"commented.pbi\"",
+                "XIncludeFile \"lib/a.pbi\" : IncludeFile \"b.pbi\"",
+                "DataSection",
+                "  Image: : IncludeBinary \"res/image.png\"",
+                "EndDataSection");
+        final File a = write("lib/a.pbi",
+                "xincludefile #PB_Compiler_FilePath + \"c.pbi\"");
+        final File b = write("b.pbi",
+                "IncludePath \"lib\"",
+                "IncludeFile \"d.pbi\"");
+        final File c = write("lib/c.pbi");
+
+        final List<File> files = PureBasicIncludeScanner.scan(main, null);
+        assertEquals(Arrays.asList(
+                main.getAbsoluteFile(),
+                a.getAbsoluteFile(),
+                c.getAbsoluteFile(),
+                b.getAbsoluteFile(),
+                dir.resolve("lib/d.pbi").toFile(),
+                // the IncludePath of b.pbi still applies when the compiler continues with main.pb
+                dir.resolve("lib/res/image.png").toFile()
+        ), files);
+    }
+
+    public void testCyclicIncludes() throws IOException {
+        final File main = write("main.pb", "IncludeFile \"other.pbi\"");
+        final File other = write("other.pbi", "IncludeFile \"main.pb\"");
+
+        assertEquals(Arrays.asList(main.getAbsoluteFile(), other.getAbsoluteFile()),
+                PureBasicIncludeScanner.scan(main, null));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.builder;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+public class TestPureBasicLibrarySync extends TestCase {
+    private Path dir;
+    private Path sdk;
+    private Path target;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("pblibrarysync");
+        sdk = dir.resolve("sdk/libraries/javascript");
+        target = dir.resolve("out/spiderbasic");
+        write(sdk.resolve("spiderbasic.js"), "runtime");
+        write(sdk.resolve("dojo/dojo.js"), "dojo");
+        write(sdk.resolve("themes/flat.css"), "theme");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted((a, b) -> b.compareTo(a)).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    public void testOnlyChangesAreInstalled() throws Exception {
+        assertEquals(3, PureBasicLibrarySync.sync(sdk, target));
+        assertEquals("dojo", read(target.resolve("dojo/dojo.js")));
+        // nothing changed, so neither the manifest nor the directory the target's stamp looks at is written
+        final Path manifest = target.resolve(PureBasicLibrarySync.MANIFEST);
+        final FileTime written = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(manifest, written);
+        Files.setLastModifiedTime(target, written);
+        assertEquals(0, PureBasicLibrarySync.sync(sdk, target));
+        assertEquals(written, Files.getLastModifiedTime(manifest));
+        assertEquals(written, Files.getLastModifiedTime(target));
+
+        // an SDK update changes a file and drops another one
+        write(sdk.resolve("spiderbasic.js"), "runtime 2");
+        Files.delete(sdk.resolve("themes/flat.css"));
+        write(target.resolve("user.js"), "user");
+        assertEquals(1, PureBasicLibrarySync.sync(sdk, target));
+        assertEquals("runtime 2", read(target.resolve("spiderbasic.js")));
+        assertFalse(Files.exists(target.resolve("themes/flat.css")));
+        assertEquals("user", read(target.resolve("user.js")));
+
+        // a file deleted from the output is installed again
+        Files.delete(target.resolve("dojo/dojo.js"));
+        assertEquals(1, PureBasicLibrarySync.sync(sdk, target));
+        assertEquals("dojo", read(target.resolve("dojo/dojo.js")));
+    }
+
+    public void testUpdatesDontWriteThroughHardLinks() throws Exception {
+        PureBasicLibrarySync.sync(sdk, target);
+        final Path installed = target.resolve("spiderbasic.js");
+        write(sdk.resolve("spiderbasic.js"), "runtime 2");
+        // a hard link sees the new content, a copy doesn't, both must end up with the new content
+        PureBasicLibrarySync.sync(sdk, target);
+        assertEquals("runtime 2", read(installed));
+
+        // replacing the installed file must leave the SDK alone
+        Files.delete(installed);
+        write(installed, "changed");
+        PureBasicLibrarySync.sync(sdk, target);
+        assertEquals("runtime 2", read(sdk.resolve("spiderbasic.js")));
+    }
+}
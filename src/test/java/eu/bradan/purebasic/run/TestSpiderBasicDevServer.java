@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2020 Daniel Brall
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package eu.bradan.purebasic.run;
+
+import junit.framework.TestCase;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class TestSpiderBasicDevServer extends TestCase {
+    private Path dir;
+    private SpiderBasicDevServer server;
+    private int port;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("sbdevserver");
+        write(dir.resolve("app.html"), "<html><body><script src=\"app.js\"></script></body></html>");
+        write(dir.resolve("app.js"), "console.log('v1');");
+        write(dir.resolve("spiderbasic/spiderbasic.js"), "runtime");
+        write(dir.getParent().resolve(dir.getFileName() + "-secret.txt"), "secret");
+        server = new SpiderBasicDevServer(dir, "app.html", dir.resolve("app.js"));
+        port = server.start(0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+        Files.deleteIfExists(dir.getParent().resolve(dir.getFileName() + "-secret.txt"));
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted((a, b) -> b.compareTo(a)).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void testServesFilesOverOneConnection() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            final Response index = Response.request(socket, "/", null);
+            assertEquals(200, index.status);
+            assertTrue(index.headers.get("content-type").startsWith("text/html"));
+            assertTrue(index.body.contains("EventSource('" + SpiderBasicDevServer.RELOAD_PATH + "')"));
+            assertTrue(index.body.indexOf("EventSource") < index.body.indexOf("</body>"));
+
+            final Response script = Response.request(socket, "/spiderbasic/spiderbasic.js", null);
+            assertEquals(200, script.status);
+            assertEquals("runtime", script.body);
+            assertTrue(script.headers.get("content-type").startsWith("application/javascript"));
+
+            assertEquals(404, Response.request(socket, "/missing.js", null).status);
+        }
+    }
+
+    public void testETag() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            final String etag = Response.request(socket, "/app.js", null).headers.get("etag");
+            assertNotNull(etag);
+
+            final Response cached = Response.request(socket, "/app.js", etag);
+            assertEquals(304, cached.status);
+            assertEquals("", cached.body);
+
+            write(dir.resolve("app.js"), "console.log('version 2');");
+            Files.setLastModifiedTime(dir.resolve("app.js"), FileTime.fromMillis(System.currentTimeMillis() + 5000));
+            final Response changed = Response.request(socket, "/app.js", etag);
+            assertEquals(200, changed.status);
+            assertEquals("console.log('version 2');", changed.body);
+        }
+    }
+
+    public void testStaysInsideTheRoot() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            final String path = "/../" + dir.getFileName() + "-secret.txt";
+            assertEquals(404, Response.request(socket, path, null).status);
+        }
+    }
+
+    public void testReloadAfterBuild() throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(10000);
+            final OutputStream out = socket.getOutputStream();
+            out.write(("GET " + SpiderBasicDevServer.RELOAD_PATH + " HTTP/1.1\r\nHost: localhost\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            final InputStream in = socket.getInputStream();
+            final Response events = Response.readHeaders(in);
+            assertEquals(200, events.status);
+            assertEquals("text/event-stream", events.headers.get("content-type"));
+
+            write(dir.resolve("app.js"), "console.log('rebuilt');");
+            Files.setLastModifiedTime(dir.resolve("app.js"), FileTime.fromMillis(System.currentTimeMillis() + 5000));
+            assertEquals("data: reload", Response.readLine(in));
+        }
+    }
+
+    public void testSkipsRequestBodies() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(10000);
+            final OutputStream out = socket.getOutputStream();
+            out.write(("POST /app.js HTTP/1.1\r\nHost: localhost\r\nContent-Length: 21\r\n\r\n"
+                    + "GET /secret HTTP/1.1\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            final Response post = Response.readHeaders(socket.getInputStream());
+            assertEquals(405, post.status);
+            assertEquals("0", post.headers.get("content-length"));
+
+            final Response script = Response.request(socket, "/app.js", null);
+            assertEquals(200, script.status);
+            assertEquals("console.log('v1');", script.body);
+        }
+    }
+
+    public void testMalformedRequests() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(10000);
+            final OutputStream out = socket.getOutputStream();
+            out.write("GET\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            assertEquals(400, Response.readHeaders(socket.getInputStream()).status);
+            assertEquals(-1, socket.getInputStream().read());
+        }
+
+        // a header which doesn't fit into the buffer, it is sent in full so the server reads all of it
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(10000);
+            final byte[] request = new byte[SpiderBasicDevServer.MAX_HEADER_SIZE];
+            Arrays.fill(request, (byte) 'x');
+            final byte[] requestLine = "GET /app.js HTTP/1.1\r\nX-Padding: ".getBytes(StandardCharsets.ISO_8859_1);
+            System.arraycopy(requestLine, 0, request, 0, requestLine.length);
+            final OutputStream out = socket.getOutputStream();
+            out.write(request);
+            out.flush();
+            assertEquals(400, Response.readHeaders(socket.getInputStream()).status);
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    public void testStopClosesConnections() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(10000);
+            assertEquals(200, Response.request(socket, "/app.js", null).status);
+            server.stop();
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    private static class Response {
+        int status;
+        final Map<String, String> headers = new HashMap<>();
+        String body = "";
+
+        static Response request(Socket socket, String path, String etag) throws IOException {
+            final StringBuilder request = new StringBuilder("GET ").append(path).append(" HTTP/1.1\r\n");
+            request.append("Host: localhost\r\n");
+            if (etag != null) {
+                request.append("If-None-Match: ").append(etag).append("\r\n");
+            }
+            request.append("\r\n");
+            final OutputStream out = socket.getOutputStream();
+            out.write(request.toString().getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+
+            final InputStream in = socket.getInputStream();
+            final Response response = readHeaders(in);
+            final String length = response.headers.get("content-length");
+            if (length != null) {
+                final byte[] body = new byte[Integer.parseInt(length)];
+                new DataInputStream(in).readFully(body);
+                response.body = new String(body, StandardCharsets.UTF_8);
+            }
+            return response;
+        }
+
+        static Response readHeaders(InputStream in) throws IOException {
+            final Response response = new Response();
+            response.status = Integer.parseInt(readLine(in).split(" ")[1]);
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                final int colon = line.indexOf(':');
+                response.headers.put(line.substring(0, colon).toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+            return response;
+        }
+
+        static String readLine(InputStream in) throws IOException {
+            final StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = in.read()) >= 0 && c != '\n') {
+                if (c != '\r') {
+                    sb.append((char) c);
+                }
+            }
+            return sb.toString();
+        }
+    }
+}